@@ -3,24 +3,46 @@ package com.github.rmannibucau.asciidoctor.backend;
 import static java.util.Locale.ROOT;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -38,7 +60,9 @@ import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -49,10 +73,13 @@ import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.AttributesBuilder;
 import org.asciidoctor.OptionsBuilder;
 import org.asciidoctor.ast.Document;
+import org.asciidoctor.ast.StructuralNode;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
+import com.github.rmannibucau.asciidoctor.backend.dita.DitaValidator;
+
 @Mojo(defaultPhase = LifecyclePhase.GENERATE_RESOURCES, name = "adoc2dita")
 public class Adoc2DitaMojo extends AbstractMojo {
 
@@ -74,6 +101,9 @@ public class Adoc2DitaMojo extends AbstractMojo {
     @Parameter(property = "adoc2dita.format", defaultValue = "true")
     private boolean format;
 
+    @Parameter(property = "adoc2dita.validate", defaultValue = "false")
+    private boolean validate;
+
     @Parameter(property = "adoc2dita.formats", defaultValue = "zip")
     private Collection<String> formats;
 
@@ -83,6 +113,51 @@ public class Adoc2DitaMojo extends AbstractMojo {
     @Parameter(property = "adoc2dita.attach", defaultValue = "true")
     private boolean attach;
 
+    @Parameter(property = "adoc2dita.mapSplitDepth", defaultValue = "0")
+    private int mapSplitDepth;
+
+    @Parameter(property = "adoc2dita.mapSplitSize", defaultValue = "0")
+    private int mapSplitSize;
+
+    @Parameter(property = "adoc2dita.chunkDepth", defaultValue = "0")
+    private int chunkDepth;
+
+    @Parameter(property = "adoc2dita.chunkMinSize", defaultValue = "0")
+    private int chunkMinSize;
+
+    @Parameter(property = "adoc2dita.reproducible", defaultValue = "false")
+    private boolean reproducible;
+
+    @Parameter(defaultValue = "${project.build.outputTimestamp}")
+    private String outputTimestamp;
+
+    @Parameter(property = "adoc2dita.skipIfUpToDate", defaultValue = "true")
+    private boolean skipIfUpToDate;
+
+    // documents using counters, footnotes, body attribute entries or includes stay sequential
+    @Parameter(property = "adoc2dita.parallelSections", defaultValue = "false")
+    private boolean parallelSections;
+
+    // additional visitors fed by the same loaded documents, each one still converts the whole tree
+    @Parameter
+    private Collection<Output> outputs;
+
+    @Parameter
+    private Collection<Variant> variants;
+
+    @Parameter(property = "adoc2dita.metrics", defaultValue = "none")
+    private String metrics;
+
+    // adds the peak heap to the statistics, it is sampled by a thread during the conversion
+    @Parameter(property = "adoc2dita.statistics", defaultValue = "false")
+    private boolean statistics;
+
+    @Parameter(defaultValue = "${plugin}", readonly = true)
+    private PluginDescriptor plugin;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    private MojoExecution mojoExecution;
+
     @Parameter(defaultValue = "${project.build.directory}", readonly = true)
     private File buildDirectory;
 
@@ -107,102 +182,197 @@ public class Adoc2DitaMojo extends AbstractMojo {
         if (sourceDirectories != sources.size() && sourceDirectories > 0) {
             throw new MojoExecutionException("All sources or none must be a directory, don't mix files and directories please");
         }
+        if (outputs != null && outputs.stream().anyMatch(o -> o.getTarget() == null)) {
+            throw new MojoExecutionException("All outputs must have a target");
+        }
+        if (variants != null && variants.stream().anyMatch(v -> v.getName() == null || v.getTarget() == null)) {
+            throw new MojoExecutionException("All variants must have a name and a target");
+        }
+        if (variants != null) { // variants are built concurrently so they can't share a directory or a bundle
+            if (variants.stream().map(Variant::getName).distinct().count() != variants.size()) {
+                throw new MojoExecutionException("Variant names must be unique");
+            }
+            final Collection<File> targets = Stream.concat(Stream.of(target), variants.stream().map(Variant::getTarget))
+                    .filter(Objects::nonNull).map(File::getAbsoluteFile).collect(toList());
+            if (targets.stream().distinct().count() != targets.size()) {
+                throw new MojoExecutionException("Variant targets must be unique and different from the target " + target);
+            }
+        }
+        final Long entryTime = reproducible ? toEntryTime() : null;
+        final boolean fromDirectory = sourceDirectories == sources.size();
+        final Collection<Variant> builds = new ArrayList<>();
+        builds.add(mainVariant());
+        ofNullable(variants).ifPresent(builds::addAll);
+
+        // before any asciidoctor work since it is the slow part (jruby)
+        final BuildFingerprint fingerprint = skipIfUpToDate ? newFingerprint() : null;
+        if (fingerprint != null && fingerprint.isUpToDate()
+                && builds.stream().allMatch(b -> b.getTarget() != null && b.getTarget().exists())) {
+            getLog().info("Dita sources are up to date, skipping conversion");
+            if (fromDirectory && formats != null) {
+                builds.forEach(build -> formats.stream().filter(format -> toBundle(build, format).exists())
+                        .forEach(format -> attach(format, toClassifier(build), toBundle(build, format))));
+            }
+            return;
+        }
+
+        final long start = System.nanoTime();
+        // sampled during the whole conversion, not only the heap left at the end, but it costs a thread so it is opt-in
+        try (final HeapSampler heap = statistics ? new HeapSampler(100) : null) {
+            final int convertedFiles = convert(builds, fromDirectory, entryTime, fingerprint);
+            logStatistics(convertedFiles, System.nanoTime() - start, heap == null ? -1 : heap.getPeak());
+        }
+    }
+
+    private int convert(final Collection<Variant> builds, final boolean fromDirectory, final Long entryTime,
+            final BuildFingerprint fingerprint) throws MojoExecutionException {
+        final Metrics recorder = createMetrics();
+        final Asciidoctor asciidoctor;
+        try (final Metrics.Measure measure = recorder.start("asciidoctor", "create")) {
+            asciidoctor = Asciidoctor.Factory.create();
+        }
+
+        final Collection<File> files = sources.stream()
+                .flatMap(source -> fromDirectory
+                        ? Stream.of(Objects.requireNonNull(source.listFiles((dir, name) -> isAdoc(name))))
+                        : Stream.of(source))
+                .collect(toList());
+        // variants share the file reads
+        final Map<File, String> contents = new ConcurrentHashMap<>();
+        final Function<File, String> reader = builds.size() == 1 ? file -> read(file, recorder)
+                : file -> contents.computeIfAbsent(file, f -> read(f, recorder));
+
+        // variants are @Data so they are keyed by identity, iterations follow builds to keep the declaration order
+        final Map<Variant, Map<String, File>> bundles = new IdentityHashMap<>();
+        if (builds.size() == 1) {
+            final Variant main = builds.iterator().next();
+            bundles.put(main, buildVariant(main, asciidoctor, files, reader, fromDirectory, entryTime, recorder));
+        } else {
+            final ExecutorService executor = Executors
+                    .newFixedThreadPool(Math.min(builds.size(), Runtime.getRuntime().availableProcessors()));
+            try {
+                final Map<Variant, Future<Map<String, File>>> futures = new IdentityHashMap<>();
+                builds.forEach(build -> futures.put(build, executor
+                        .submit(() -> buildVariant(build, asciidoctor, files, reader, fromDirectory, entryTime, recorder))));
+                for (final Variant build : builds) {
+                    try {
+                        bundles.put(build, futures.get(build).get());
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new MojoExecutionException(e.getMessage(), e);
+                    } catch (final ExecutionException e) {
+                        if (MojoExecutionException.class.isInstance(e.getCause())) {
+                            throw MojoExecutionException.class.cast(e.getCause());
+                        }
+                        throw new MojoExecutionException(e.getCause().getMessage(), e.getCause());
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        // the project is not thread safe so attach once all variants are done, in the declaration order
+        builds.forEach(build -> bundles.get(build).forEach((format, bundle) -> attach(format, toClassifier(build), bundle)));
+
+        if (fingerprint != null) {
+            builds.forEach(build -> fingerprint.addOutput(build.getTarget()));
+            ofNullable(outputs).ifPresent(o -> o.forEach(output -> fingerprint.addOutput(output.getTarget())));
+            builds.forEach(build -> bundles.get(build).values().forEach(fingerprint::addOutput));
+            fingerprint.save();
+        }
+        return files.size() * builds.size();
+    }
+
+    // stable single line format so builds can be compared (grep/trend reports)
+    private void logStatistics(final int convertedFiles, final long durationNanos, final long peakHeap) {
+        final long durationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        getLog().info(String.format(ROOT, "adoc2dita statistics: files=%d, duration=%dms, throughput=%.2f files/s",
+                convertedFiles, durationMs, durationMs == 0 ? 0. : convertedFiles * 1000. / durationMs)
+                + (peakHeap < 0 ? "" : ", peakHeap=" + peakHeap / (1024 * 1024) + "MB"));
+    }
 
-        final Asciidoctor asciidoctor = Asciidoctor.Factory.create();
+    private Map<String, File> buildVariant(final Variant variant, final Asciidoctor asciidoctor, final Collection<File> files,
+            final Function<File, String> reader, final boolean fromDirectory, final Long entryTime, final Metrics recorder)
+            throws MojoExecutionException {
+        final File variantTarget = variant.getTarget();
         final AttributesBuilder attributes = AttributesBuilder.attributes().attribute("preambleAsParagraph",
                 this.preambleAsParagraph);
         ofNullable(this.attributes).ifPresent(attrs -> attrs.forEach(attributes::attribute));
+        ofNullable(variant.getAttributes()).ifPresent(attrs -> attrs.forEach(attributes::attribute));
         final OptionsBuilder options = OptionsBuilder.options().toFile(false).backend("dita").attributes(attributes);
 
-        final TransformerFactory transformerFactory;
+        // factories are not thread safe so one per variant, documents are written concurrently so they lock it
+        final TransformerFactory transformerFactory = format ? TransformerFactory.newInstance() : null;
         final SAXParserFactory parserFactory;
-        if (format) {
-            transformerFactory = TransformerFactory.newInstance();
+        if (format || validate) {
             parserFactory = SAXParserFactory.newInstance();
             parserFactory.setValidating(false);
         } else {
-            transformerFactory = null;
             parserFactory = null;
         }
 
         final Map<String, Object> opts = options.asMap();
-        final boolean fromDirectory = sourceDirectories == sources.size();
-        final Aggregator aggregator = new Aggregator(null, asciidoctor, options);
+        final Aggregator aggregator = new Aggregator(images, asciidoctor, options, recorder);
+        // additional outputs reuse the read and loaded document of the main one but convert it again,
+        // see CompositeDocumentVisitor
+        final Map<Output, Aggregator> outputAggregators = new LinkedHashMap<>();
+        if (variant.getName() == null) {
+            ofNullable(outputs).ifPresent(o -> o.forEach(
+                    output -> outputAggregators.put(output, new Aggregator(images, asciidoctor, options, recorder))));
+        }
+        final Map<String, Object> converterOpts = new HashMap<>(opts);
+        converterOpts.put("parallelSections", parallelSections);
+        converterOpts.put("visitorPool", new DocumentVisitorPool(createVisitorFactory(outputAggregators),
+                Runtime.getRuntime().availableProcessors()));
         // 2 rounds to ensure xref are valid
-        IntStream.range(0, 2).forEach(round -> sources.forEach(source -> {
-            aggregator.setImages(images);
-            (fromDirectory ? Stream.of(Objects.requireNonNull(source.listFiles((dir, name) -> isAdoc(name)))) : Stream.of(source))
-                    .forEach(from -> {
-                        try (final GenericConverter converter = new GenericConverter("dita", opts)) {
-                            final String file = Files.readAllLines(from.toPath()).stream().collect(joining("\n"));
-
-                            converter.setAggregator(aggregator);
-
-                            final Document document = asciidoctor.load(file, opts);
-                            final Map<Object, Object> config = new HashMap<Object, Object>(opts) {
-
-                                {
-                                    put("originalFile", from.getName());
-                                }
-                            };
-                            converter.convert(document, null, config);
-                        } catch (final IOException e) {
-                            throw new IllegalArgumentException(e);
+        IntStream.range(0, 2).forEach(round -> files.forEach(from -> {
+            try (final GenericConverter converter = new GenericConverter("dita", converterOpts)) {
+                final String file = reader.apply(from);
+
+                converter.setAggregator(aggregator);
+
+                final Metrics.Measure load = recorder.start("asciidoctor", "load");
+                final Document document = asciidoctor.load(file, opts);
+                load.stop(file.length());
+                final Map<Object, Object> config = new HashMap<Object, Object>(opts) {
+
+                    {
+                        put("originalFile", from.getName());
+                        put("mapSplitDepth", mapSplitDepth);
+                        put("mapSplitSize", mapSplitSize);
+                        put("chunkDepth", chunkDepth);
+                        put("chunkMinSize", chunkMinSize);
+                        if (parallelSections && hasConversionOrderState(file, document)) {
+                            put("parallelSections", false);
                         }
-                    });
+                    }
+                };
+                converter.convert(document, null, config);
+            }
         }));
 
-        getLog().info("Writing documents");
-        aggregator.getDocuments().forEach((filename, content) -> {
-            String output = content;
-            if (format) {
-                try {
-                    final Transformer transformer = transformerFactory.newTransformer();
-                    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                    transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-                    final StreamResult result = new StreamResult(new StringWriter());
-                    final SAXParser parser = parserFactory.newSAXParser();
-                    final XMLReader xmlReader = parser.getXMLReader();
-                    xmlReader.setEntityResolver((publicId, systemId) -> {
-                        if (systemId.endsWith(".dtd")) {
-                            return new InputSource(new StringReader(" "));
-                        }
-                        return null;
-                    });
-                    transformer.transform(new SAXSource(xmlReader, new InputSource(new StringReader(output))), result);
-                    output = result.getWriter().toString();
-                } catch (final ParserConfigurationException | SAXException | TransformerException e) {
-                    getLog().warn(e.getMessage(), e);
-                }
-            }
-            final File outputFile = fromDirectory ? new File(target, filename) : target;
-            outputFile.getParentFile().mkdirs();
-            try (final Writer w = new BufferedWriter(new FileWriter(outputFile))) {
-                w.write(output);
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            }
-            getLog().info("Write " + outputFile);
+        getLog().info("Writing documents" + ofNullable(variant.getName()).map(n -> " of variant " + n).orElse(""));
+        final Collection<DitaValidator> invalidDocuments = writeDocuments(aggregator, variantTarget, fromDirectory, validate,
+                transformerFactory, parserFactory, recorder);
+        copyResources(aggregator, variantTarget);
+        outputAggregators.forEach((output, outputAggregator) -> {
+            writeDocuments(outputAggregator, output.getTarget(), fromDirectory, false, transformerFactory, parserFactory,
+                    recorder);
+            copyResources(outputAggregator, output.getTarget());
         });
-        if (images != null) {
-            final Path imgPath = images.toPath();
-            aggregator.getResources().forEach(resource -> {
-                try {
-                    final File copy = new File(target, imgPath.relativize(resource.toPath()).toString());
-                    copy.getParentFile().mkdirs();
-                    Files.copy(resource.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                } catch (IOException e) {
-                    throw new IllegalStateException(e);
-                }
-            });
+
+        if (!invalidDocuments.isEmpty()) {
+            invalidDocuments.forEach(validator -> validator.getErrors().forEach(getLog()::error));
+            throw new MojoExecutionException(invalidDocuments.size() + " invalid dita document(s)");
         }
 
-        if (!aggregator.getDocuments().isEmpty() && fromDirectory && formats != null) {
-            final Path prefix = target.toPath().toAbsolutePath();
+        final Map<String, File> bundles = new LinkedHashMap<>();
+        if (aggregator.hasDocuments() && fromDirectory && formats != null) {
+            final Path prefix = variantTarget.toPath().toAbsolutePath();
             formats.forEach(format -> {
                 getLog().info(format + "-ing dita sources");
 
-                final File output = new File(buildDirectory, artifactId + "-dita-bundle." + format);
+                final File output = toBundle(variant, format);
                 output.getParentFile().mkdirs();
 
                 switch (format.toLowerCase(ROOT)) {
@@ -210,8 +380,8 @@ public class Adoc2DitaMojo extends AbstractMojo {
                     try (final TarArchiveOutputStream tarGz = new TarArchiveOutputStream(
                             new GZIPOutputStream(new FileOutputStream(output)))) {
                         tarGz.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
-                        for (final String entry : target.list()) {
-                            tarGz(tarGz, new File(target, entry), prefix);
+                        for (final File entry : sortedChildren(variantTarget)) {
+                            tarGz(tarGz, entry, prefix, entryTime, recorder);
                         }
                     } catch (final IOException e) {
                         throw new IllegalStateException(e.getMessage(), e);
@@ -219,8 +389,10 @@ public class Adoc2DitaMojo extends AbstractMojo {
                     break;
                 case "zip":
                     try (final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new FileOutputStream(output))) {
-                        for (final String entry : target.list()) {
-                            zip(zos, new File(target, entry), prefix);
+                        zos.setMethod(ZipArchiveOutputStream.DEFLATED);
+                        zos.setLevel(Deflater.DEFAULT_COMPRESSION);
+                        for (final File entry : sortedChildren(variantTarget)) {
+                            zip(zos, entry, prefix, entryTime, recorder);
                         }
                     } catch (final IOException e) {
                         throw new IllegalStateException(e.getMessage(), e);
@@ -230,32 +402,342 @@ public class Adoc2DitaMojo extends AbstractMojo {
                     throw new IllegalArgumentException(format + " is not supported");
                 }
 
-                attach(format, output);
+                bundles.put(format, output);
             });
         } else if (formats != null && !formats.isEmpty()) {
             getLog().warn("You can't bundle a single file, move source/target to directories");
         }
+        return bundles;
+    }
+
+    private String read(final File file, final Metrics recorder) {
+        final Metrics.Measure read = recorder.start("io", "read");
+        try {
+            final String content = Files.readAllLines(file.toPath()).stream().collect(joining("\n"));
+            read.stop(content.length());
+            return content;
+        } catch (final IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    // asciidoctor numbers counters and footnotes and replays body attribute entries while converting, all in the
+    // document attributes, so converting sections concurrently would shuffle them. Included files are not inspected.
+    private boolean hasConversionOrderState(final String content, final Document document) {
+        return content.contains("{counter:") || content.contains("{counter2:") || content.contains("footnote:")
+                || content.contains("footnoteref:") || content.contains("include::") || hasAttributeEntries(document);
+    }
+
+    // the parser stores the body ":name: value" entries on the next block, playback_attributes() applies them
+    private boolean hasAttributeEntries(final StructuralNode node) {
+        final Map<String, Object> attributes = node.getAttributes();
+        if (attributes != null && attributes.containsKey("attribute_entries")) {
+            return true;
+        }
+        final List<StructuralNode> blocks = node.getBlocks();
+        return blocks != null && blocks.stream().anyMatch(this::hasAttributeEntries);
+    }
+
+    private Variant mainVariant() {
+        final Variant main = new Variant();
+        main.setTarget(target);
+        main.setClassifier(classifier);
+        return main;
+    }
+
+    private String toClassifier(final Variant variant) {
+        return ofNullable(variant.getClassifier()).orElseGet(variant::getName);
+    }
+
+    private DocumentVisitorFactory createVisitorFactory(final Map<Output, Aggregator> outputAggregators) {
+        final DocumentVisitorFactory primary = DocumentVisitorFactory.of(null);
+        if (outputAggregators.isEmpty()) {
+            return primary;
+        }
+        final Map<DocumentVisitorFactory, Aggregator> factories = new LinkedHashMap<>();
+        outputAggregators
+                .forEach((output, aggregator) -> factories.put(DocumentVisitorFactory.of(output.getVisitor()), aggregator));
+        return () -> {
+            final Map<DocumentVisitor, Aggregator> secondaries = new LinkedHashMap<>();
+            factories.forEach((factory, aggregator) -> secondaries.put(factory.create(), aggregator));
+            return new CompositeDocumentVisitor(primary.create(), secondaries);
+        };
+    }
+
+    // none, jfr or the fully qualified name of a Metrics implementation
+    private Metrics createMetrics() throws MojoExecutionException {
+        final String value = ofNullable(metrics).map(String::trim).orElse("");
+        switch (value.toLowerCase(ROOT)) {
+        case "":
+        case "none":
+            return Metrics.NOOP;
+        case "jfr": // not linked statically since the plugin can be built and run on a java 8 without jdk.jfr
+            try {
+                return newMetrics(Adoc2DitaMojo.class.getClassLoader(), Metrics.class.getPackage().getName() + ".JfrMetrics");
+            } catch (final ReflectiveOperationException | LinkageError e) {
+                throw new MojoExecutionException(
+                        "metrics=jfr requires jdk.jfr (java 11 or 8u262+) and a plugin built with java 11+", e);
+            }
+        default:
+            try {
+                return newMetrics(Thread.currentThread().getContextClassLoader(), value);
+            } catch (final ReflectiveOperationException e) {
+                throw new MojoExecutionException("Can't create metrics " + value, e);
+            }
+        }
+    }
+
+    private Metrics newMetrics(final ClassLoader loader, final String type) throws ReflectiveOperationException {
+        return Metrics.class.cast(loader.loadClass(type).getConstructor().newInstance());
+    }
+
+    private File toBundle(final Variant variant, final String format) {
+        return new File(buildDirectory,
+                artifactId + ofNullable(variant.getName()).map(n -> "-" + n).orElse("") + "-dita-bundle." + format);
+    }
+
+    private BuildFingerprint newFingerprint() {
+        final Map<String, Object> configuration = new TreeMap<>();
+        configuration.put("pluginVersion", plugin == null ? null : plugin.getVersion());
+        configuration.put("sources", sources);
+        configuration.put("target", target);
+        configuration.put("images", images);
+        configuration.put("preambleAsParagraph", preambleAsParagraph);
+        configuration.put("excludes", excludes);
+        configuration.put("format", format);
+        configuration.put("validate", validate);
+        configuration.put("formats", formats);
+        configuration.put("classifier", classifier);
+        configuration.put("mapSplitDepth", mapSplitDepth);
+        configuration.put("mapSplitSize", mapSplitSize);
+        configuration.put("chunkDepth", chunkDepth);
+        configuration.put("chunkMinSize", chunkMinSize);
+        configuration.put("reproducible", reproducible);
+        configuration.put("outputTimestamp", outputTimestamp);
+        configuration.put("outputs", outputs);
+        configuration.put("variants", variants == null ? null : variants.stream()
+                .map(v -> v.getName() + "|" + v.getTarget() + "|" + v.getClassifier() + "|"
+                        + (v.getAttributes() == null ? null : new TreeMap<>(v.getAttributes())))
+                .collect(toList()));
+        configuration.put("attributes", attributes == null ? null : new TreeMap<>(attributes));
+
+        // directories are fully hashed since they can contain included files
+        final String executionId = ofNullable(mojoExecution).map(MojoExecution::getExecutionId).orElse("default");
+        final BuildFingerprint fingerprint = new BuildFingerprint(new File(buildDirectory, "adoc2dita/" + artifactId
+                + (classifier == null ? "" : "-" + classifier) + "-" + executionId + ".state"), configuration.toString());
+        sources.forEach(fingerprint::add);
+        fingerprint.add(images);
+        return fingerprint;
+    }
+
+    // documents are independent so they are formatted, validated and written concurrently,
+    // except when the target is a single file since they are all written to it then
+    private Collection<DitaValidator> writeDocuments(final Aggregator aggregator, final File outputTarget,
+            final boolean fromDirectory, final boolean validation, final TransformerFactory transformerFactory,
+            final SAXParserFactory parserFactory, final Metrics recorder) {
+        final Stream<DitaValidator> validators = Stream.concat(
+                aggregator.getDocuments().entrySet().stream()
+                        .map(document -> writeDocument(document.getKey(), document.getValue(), outputTarget, fromDirectory,
+                                validation, transformerFactory, parserFactory, recorder)),
+                aggregator.getStreamedDocuments().entrySet().stream()
+                        .map(document -> writeStreamedDocument(document.getKey(), document.getValue(), outputTarget,
+                                fromDirectory, validation, transformerFactory, parserFactory, recorder)));
+        return (fromDirectory ? validators.parallel() : validators)
+                .filter(validator -> validator != null && !validator.isValid()).collect(toList());
+    }
+
+    // the document is never in memory: it is rendered to the file and, to be formatted or validated, parsed back from it
+    private DitaValidator writeStreamedDocument(final String filename, final DocumentWriter document,
+            final File outputTarget, final boolean fromDirectory, final boolean validation,
+            final TransformerFactory transformerFactory, final SAXParserFactory parserFactory, final Metrics recorder) {
+        final File outputFile = fromDirectory ? new File(outputTarget, filename) : outputTarget;
+        outputFile.getParentFile().mkdirs();
+        final boolean parse = format || validation;
+        final File raw = parse ? new File(outputFile.getParentFile(), outputFile.getName() + ".raw") : outputFile;
+        final Metrics.Measure write = recorder.start("io", "write");
+        try (final Writer w = new BufferedWriter(new FileWriter(raw))) {
+            document.write(w);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        write.stop(raw.length());
+
+        final DitaValidator validator = validation ? new DitaValidator(filename) : null;
+        if (parse) {
+            try {
+                boolean formatted = false;
+                if (format) {
+                    final Metrics.Measure measure = recorder.start("format", filename);
+                    try (final Reader reader = new BufferedReader(new FileReader(raw));
+                            final Writer w = new BufferedWriter(new FileWriter(outputFile))) {
+                        final XMLReader xmlReader = newXmlReader(parserFactory);
+                        if (validator != null) {
+                            validator.setParent(xmlReader);
+                        }
+                        newTransformer(transformerFactory).transform(
+                                new SAXSource(validator != null ? validator : xmlReader, new InputSource(reader)),
+                                new StreamResult(w));
+                        formatted = true;
+                    } catch (final ParserConfigurationException | SAXException | TransformerException e) {
+                        getLog().warn(e.getMessage(), e);
+                    }
+                    measure.stop(outputFile.length());
+                } else {
+                    try (final Metrics.Measure measure = recorder.start("validate", filename);
+                            final Reader reader = new BufferedReader(new FileReader(raw))) {
+                        validator.validate(newXmlReader(parserFactory), new InputSource(reader));
+                    } catch (final ParserConfigurationException | SAXException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                if (!formatted) { // keep the raw output as the in memory documents do
+                    Files.move(raw.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                raw.delete();
+            }
+        }
+        getLog().info("Write " + outputFile);
+        return validator;
+    }
+
+    private DitaValidator writeDocument(final String filename, final String content, final File outputTarget,
+            final boolean fromDirectory, final boolean validation, final TransformerFactory transformerFactory,
+            final SAXParserFactory parserFactory, final Metrics recorder) {
+        String output = content;
+        // validation is a filter on the formatting parsing to avoid to parse twice the document
+        final DitaValidator validator = validation ? new DitaValidator(filename) : null;
+        if (format) {
+            final Metrics.Measure measure = recorder.start("format", filename);
+            try {
+                final Transformer transformer = newTransformer(transformerFactory);
+                final StreamResult result = new StreamResult(new StringWriter());
+                final XMLReader xmlReader = newXmlReader(parserFactory);
+                if (validator != null) {
+                    validator.setParent(xmlReader);
+                }
+                transformer.transform(new SAXSource(validator != null ? validator : xmlReader,
+                        new InputSource(new StringReader(output))), result);
+                output = result.getWriter().toString();
+            } catch (final ParserConfigurationException | SAXException | TransformerException e) {
+                getLog().warn(e.getMessage(), e);
+            }
+            measure.stop(output.length());
+        } else if (validator != null) {
+            try (final Metrics.Measure measure = recorder.start("validate", filename)) {
+                validator.validate(newXmlReader(parserFactory), output);
+            } catch (final ParserConfigurationException | SAXException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        final File outputFile = fromDirectory ? new File(outputTarget, filename) : outputTarget;
+        outputFile.getParentFile().mkdirs();
+        final Metrics.Measure write = recorder.start("io", "write");
+        try (final Writer w = new BufferedWriter(new FileWriter(outputFile))) {
+            w.write(output);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        write.stop(output.length());
+        getLog().info("Write " + outputFile);
+        return validator;
+    }
+
+    private void copyResources(final Aggregator aggregator, final File outputTarget) {
+        if (images != null) {
+            final Path imgPath = images.toPath();
+            aggregator.getResources().forEach(resource -> {
+                try {
+                    final File copy = new File(outputTarget, imgPath.relativize(resource.toPath()).toString());
+                    copy.getParentFile().mkdirs();
+                    Files.copy(resource.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+    private Transformer newTransformer(final TransformerFactory transformerFactory) throws TransformerException {
+        final Transformer transformer;
+        synchronized (transformerFactory) {
+            transformer = transformerFactory.newTransformer();
+        }
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        return transformer;
+    }
+
+    private XMLReader newXmlReader(final SAXParserFactory parserFactory) throws ParserConfigurationException, SAXException {
+        final SAXParser parser;
+        synchronized (parserFactory) {
+            parser = parserFactory.newSAXParser();
+        }
+        final XMLReader xmlReader = parser.getXMLReader();
+        xmlReader.setEntityResolver((publicId, systemId) -> {
+            if (systemId.endsWith(".dtd")) {
+                return new InputSource(new StringReader(" "));
+            }
+            return null;
+        });
+        return xmlReader;
     }
 
     private boolean isAdoc(final String name) {
         return !name.startsWith(".") && name.endsWith(".adoc") && (excludes == null || !excludes.contains(name));
     }
 
-    private void tarGz(final TarArchiveOutputStream tarGz, final File f, final Path prefix) throws IOException {
+    // null entryTime means the filesystem metadata are kept
+    private void tarGz(final TarArchiveOutputStream tarGz, final File f, final Path prefix, final Long entryTime,
+            final Metrics metrics) throws IOException {
         final String path = prefix.relativize(f.toPath()).toString().replace(File.separator, "/");
         final TarArchiveEntry archiveEntry = new TarArchiveEntry(f, path);
+        if (entryTime != null) {
+            archiveEntry.setModTime(entryTime);
+            archiveEntry.setMode(f.isDirectory() ? TarArchiveEntry.DEFAULT_DIR_MODE : TarArchiveEntry.DEFAULT_FILE_MODE);
+            archiveEntry.setUserId(0);
+            archiveEntry.setGroupId(0);
+            archiveEntry.setUserName("");
+            archiveEntry.setGroupName("");
+        }
         tarGz.putArchiveEntry(archiveEntry);
         if (f.isDirectory()) {
             tarGz.closeArchiveEntry();
-            final File[] files = f.listFiles();
-            if (files != null) {
-                for (final File child : files) {
-                    tarGz(tarGz, child, prefix);
-                }
+            for (final File child : sortedChildren(f)) {
+                tarGz(tarGz, child, prefix, entryTime, metrics);
             }
         } else if (isDitaFile(f)) {
+            final Metrics.Measure measure = metrics.start("archive", path);
             Files.copy(f.toPath(), tarGz);
             tarGz.closeArchiveEntry();
+            measure.stop(f.length());
+        }
+    }
+
+    private File[] sortedChildren(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return files;
+    }
+
+    // same rules as maven-archiver: iso 8601 date or seconds since epoch, unset means 1980-01-01 (zip min date)
+    private long toEntryTime() throws MojoExecutionException {
+        if (outputTimestamp == null || outputTimestamp.trim().length() < 2) {
+            return 315532802000L;
+        }
+        final String value = outputTimestamp.trim();
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+            }
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (final DateTimeParseException | NumberFormatException e) {
+            throw new MojoExecutionException("Invalid outputTimestamp: " + value, e);
         }
     }
 
@@ -265,25 +747,30 @@ public class Adoc2DitaMojo extends AbstractMojo {
                 || name.endsWith(".jpeg") || name.endsWith(".webvm");
     }
 
-    private void zip(final ZipArchiveOutputStream zip, final File f, final Path prefix) throws IOException {
+    private void zip(final ZipArchiveOutputStream zip, final File f, final Path prefix, final Long entryTime,
+            final Metrics metrics) throws IOException {
         final String path = prefix.relativize(f.toPath()).toString().replace(File.separator, "/");
         final ZipArchiveEntry archiveEntry = new ZipArchiveEntry(f, path);
+        if (entryTime != null) {
+            // zip stores local dos time so cancel the timezone to get the same bytes everywhere
+            archiveEntry.setTime(entryTime - TimeZone.getDefault().getOffset(entryTime));
+            archiveEntry.setUnixMode(f.isDirectory() ? 040755 : 0100644);
+        }
         zip.putArchiveEntry(archiveEntry);
         if (f.isDirectory()) {
             zip.closeArchiveEntry();
-            final File[] files = f.listFiles();
-            if (files != null) {
-                for (final File child : files) {
-                    zip(zip, child, prefix);
-                }
+            for (final File child : sortedChildren(f)) {
+                zip(zip, child, prefix, entryTime, metrics);
             }
         } else if (isDitaFile(f)) {
+            final Metrics.Measure measure = metrics.start("archive", path);
             Files.copy(f.toPath(), zip);
             zip.closeArchiveEntry();
+            measure.stop(f.length());
         }
     }
 
-    private void attach(final String ext, final File output) {
+    private void attach(final String ext, final String classifier, final File output) {
         if (attach) {
             getLog().info("Attaching dita files as a " + ext);
             if (classifier != null) {
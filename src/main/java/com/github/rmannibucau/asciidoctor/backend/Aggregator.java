@@ -24,11 +24,51 @@ public class Aggregator {
 
     private final OptionsBuilder optionsBuilder;
 
+    private final Metrics metrics;
+
     private final Map<String, String> documents = new ConcurrentHashMap<>();
 
+    private final Map<String, DocumentWriter> streamedDocuments = new ConcurrentHashMap<>();
+
     private final Collection<File> resources = new ArrayList<>();
 
+    // id of a section inlined in its parent topic -> name of the topic containing it
+    private final Map<String, String> inlinedSections = new ConcurrentHashMap<>();
+
+    public boolean hasDocuments() {
+        return !documents.isEmpty() || !streamedDocuments.isEmpty();
+    }
+
     public boolean fileExists(final String link) {
-        return documents.containsKey(link);
+        return documents.containsKey(link) || streamedDocuments.containsKey(link);
+    }
+
+    public String findContainingTopic(final String sectionId) {
+        return inlinedSections.get(sectionId);
+    }
+
+    // buffers the documents and resources of a parallel conversion until merge() is called
+    public Aggregator fork() {
+        final Aggregator parent = this;
+        return new Aggregator(images, asciidoctor, optionsBuilder, metrics) {
+
+            @Override
+            public boolean fileExists(final String link) {
+                return super.fileExists(link) || parent.fileExists(link);
+            }
+
+            @Override
+            public String findContainingTopic(final String sectionId) {
+                final String topic = super.findContainingTopic(sectionId);
+                return topic != null ? topic : parent.findContainingTopic(sectionId);
+            }
+        };
+    }
+
+    public void merge(final Aggregator fork) {
+        documents.putAll(fork.getDocuments());
+        streamedDocuments.putAll(fork.getStreamedDocuments());
+        resources.addAll(fork.getResources());
+        inlinedSections.putAll(fork.getInlinedSections());
     }
 }
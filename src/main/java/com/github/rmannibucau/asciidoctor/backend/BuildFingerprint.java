@@ -0,0 +1,159 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+// file lines are "path size lastModified sha256" so unchanged metadata reuse the previous hash,
+// produced files are "output path size lastModified" and must be untouched for the build to be up to date
+public class BuildFingerprint {
+
+    private final File state;
+
+    private final String configuration;
+
+    private final Map<String, String[]> previousFiles = new TreeMap<>();
+
+    private final Map<String, String[]> files = new TreeMap<>();
+
+    private final Map<String, String[]> previousOutputs = new TreeMap<>();
+
+    private final Map<String, String[]> outputs = new TreeMap<>();
+
+    private String previousConfiguration;
+
+    public BuildFingerprint(final File state, final String configuration) {
+        this.state = state;
+        this.configuration = sha256(configuration.getBytes(UTF_8));
+        if (state.isFile()) {
+            try (final Stream<String> lines = Files.lines(state.toPath(), UTF_8)) {
+                lines.forEach(line -> {
+                    if (line.startsWith("config ")) {
+                        previousConfiguration = line.substring("config ".length());
+                    } else if (line.startsWith("output ")) {
+                        final String[] segments = line.substring("output ".length()).split(" ");
+                        previousOutputs.put(String.join(" ", Arrays.copyOf(segments, segments.length - 2)),
+                                Arrays.copyOfRange(segments, segments.length - 2, segments.length));
+                    } else if (!line.isEmpty()) {
+                        final String[] segments = line.split(" ");
+                        previousFiles.put(String.join(" ", Arrays.copyOf(segments, segments.length - 3)),
+                                Arrays.copyOfRange(segments, segments.length - 3, segments.length));
+                    }
+                });
+            } catch (final IOException | RuntimeException e) { // corrupted state, just rebuild
+                previousConfiguration = null;
+                previousFiles.clear();
+                previousOutputs.clear();
+            }
+        }
+    }
+
+    public BuildFingerprint add(final File file) {
+        if (file == null || !file.exists()) {
+            return this;
+        }
+        try (final Stream<Path> paths = Files.walk(file.toPath())) {
+            paths.filter(Files::isRegularFile).map(Path::toFile).forEach(this::addFile);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return this;
+    }
+
+    // to call once the build is done, the files are only checked by metadata since they can be big (bundles)
+    public BuildFingerprint addOutput(final File file) {
+        if (file == null || !file.exists()) {
+            return this;
+        }
+        try (final Stream<Path> paths = Files.walk(file.toPath())) {
+            paths.filter(Files::isRegularFile).map(Path::toFile)
+                    .forEach(f -> outputs.put(f.getAbsolutePath(), metadata(f)));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return this;
+    }
+
+    public boolean isUpToDate() {
+        return configuration.equals(previousConfiguration) && hashes(files).equals(hashes(previousFiles))
+                && previousOutputs.entrySet().stream().allMatch(output -> {
+                    final File file = new File(output.getKey());
+                    return file.isFile() && Arrays.equals(metadata(file), output.getValue());
+                });
+    }
+
+    public void save() {
+        final Collection<String> lines = new ArrayList<>(files.size() + 1);
+        lines.add("config " + configuration);
+        files.forEach((path, meta) -> lines.add(path + " " + String.join(" ", meta)));
+        outputs.forEach((path, meta) -> lines.add("output " + path + " " + String.join(" ", meta)));
+        try {
+            state.getParentFile().mkdirs();
+            Files.write(state.toPath(), lines, UTF_8);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void addFile(final File file) {
+        final String path = file.getAbsolutePath();
+        final String size = Long.toString(file.length());
+        final String lastModified = Long.toString(file.lastModified());
+        final String[] previous = previousFiles.get(path);
+        final String hash = previous != null && previous[0].equals(size) && previous[1].equals(lastModified) ? previous[2]
+                : sha256(file);
+        files.put(path, new String[] { size, lastModified, hash });
+    }
+
+    private static String[] metadata(final File file) {
+        return new String[] { Long.toString(file.length()), Long.toString(file.lastModified()) };
+    }
+
+    private static Map<String, String> hashes(final Map<String, String[]> files) {
+        return files.entrySet().stream().collect(toMap(Map.Entry::getKey, e -> e.getValue()[2], (a, b) -> a, TreeMap::new));
+    }
+
+    private static String sha256(final File file) {
+        final MessageDigest digest = newDigest();
+        final byte[] buffer = new byte[8192];
+        try (final InputStream stream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return hex(digest.digest());
+    }
+
+    private static String sha256(final byte[] bytes) {
+        return hex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        return String.format("%064x", new BigInteger(1, bytes));
+    }
+}
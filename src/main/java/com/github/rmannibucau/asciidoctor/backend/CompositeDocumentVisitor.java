@@ -0,0 +1,184 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.asciidoctor.ast.Block;
+import org.asciidoctor.ast.Cell;
+import org.asciidoctor.ast.ContentNode;
+import org.asciidoctor.ast.DescriptionList;
+import org.asciidoctor.ast.Document;
+import org.asciidoctor.ast.List;
+import org.asciidoctor.ast.Section;
+import org.asciidoctor.ast.Table;
+
+// each delegate converts the document in turn: while it runs, all nested callbacks (children content suppliers)
+// are routed to it only. Only the loaded document is shared: children are converted inside the parent callback
+// (supplier) so converting them once for all delegates would run them before some delegates entered the parent.
+// The returned value is the primary visitor one.
+public class CompositeDocumentVisitor implements DocumentVisitor {
+
+    private final DocumentVisitor primary;
+
+    // secondary visitors are bound to their own aggregator
+    private final Map<DocumentVisitor, Aggregator> secondaries;
+
+    private final Collection<DocumentVisitor> delegates = new ArrayList<>();
+
+    private DocumentVisitor active;
+
+    public CompositeDocumentVisitor(final DocumentVisitor primary, final Map<DocumentVisitor, Aggregator> secondaries) {
+        this.primary = primary;
+        this.secondaries = secondaries;
+        this.delegates.add(primary);
+        this.delegates.addAll(secondaries.keySet());
+    }
+
+    @Override
+    public void setAggregator(final Aggregator aggregator) {
+        primary.setAggregator(aggregator);
+        secondaries.forEach(DocumentVisitor::setAggregator);
+    }
+
+    @Override
+    public void reset() {
+        active = null;
+        delegates.forEach(DocumentVisitor::reset);
+    }
+
+    @Override
+    public String onDocument(final Document document, final String transform, final Map<Object, Object> opts,
+            final Supplier<String> contentSupplier) {
+        // visitors can consume options (originalFile) so each one gets its own copy
+        final Map<Object, Object> snapshot = new HashMap<>(opts);
+        return dispatch(v -> v.onDocument(document, transform, v == primary ? opts : new HashMap<>(snapshot),
+                contentSupplier));
+    }
+
+    @Override
+    public String onSection(final Section section, final String transform, final Map<Object, Object> opts,
+            final Supplier<String> contentSupplier) {
+        return dispatch(v -> v.onSection(section, transform, opts, contentSupplier));
+    }
+
+    @Override
+    public String onListing(final Block block, final String transform, final Map<Object, Object> opts,
+            final Supplier<String> contentSupplier) {
+        return dispatch(v -> v.onListing(block, transform, opts, contentSupplier));
+    }
+
+    @Override
+    public String onPreamble(final Block block, final String transform, final Map<Object, Object> opts,
+            final Supplier<String> contentSupplier) {
+        return dispatch(v -> v.onPreamble(block, transform, opts, contentSupplier));
+    }
+
+    @Override
+    public String onParagraph(final Block block, final String transform, final Map<Object, Object> opts,
+            final Supplier<String> contentSupplier) {
+        return dispatch(v -> v.onParagraph(block, transform, opts, contentSupplier));
+    }
+
+    @Override
+    public String onImage(final ContentNode block, final String transform, final Map<Object, Object> opts, final String alt,
+            final String path) {
+        return dispatch(v -> v.onImage(block, transform, opts, alt, path));
+    }
+
+    @Override
+    public String onAdmonition(final Block block, final String transform, final Map<Object, Object> opts, final String label,
+            final Supplier<String> contentSupplier) {
+        return dispatch(v -> v.onAdmonition(block, transform, opts, label, contentSupplier));
+    }
+
+    @Override
+    public String onDescriptionList(final DescriptionList list, final String transform, final Map<Object, Object> opts) {
+        return dispatch(v -> v.onDescriptionList(list, transform, opts));
+    }
+
+    @Override
+    public String onList(final List list, final String transform, final Map<Object, Object> opts) {
+        return dispatch(v -> v.onList(list, transform, opts));
+    }
+
+    @Override
+    public String onMonospaced(final String value) {
+        return dispatch(v -> v.onMonospaced(value));
+    }
+
+    @Override
+    public String onStrong(final String value) {
+        return dispatch(v -> v.onStrong(value));
+    }
+
+    @Override
+    public String onEmphasis(final String value) {
+        return dispatch(v -> v.onEmphasis(value));
+    }
+
+    @Override
+    public String onXref(final String value, final String title) {
+        return dispatch(v -> v.onXref(value, title));
+    }
+
+    @Override
+    public String onLink(final String value) {
+        return dispatch(v -> v.onLink(value));
+    }
+
+    @Override
+    public String onLine(final String value) {
+        return dispatch(v -> v.onLine(value));
+    }
+
+    @Override
+    public String onCallout(final String value) {
+        return dispatch(v -> v.onCallout(value));
+    }
+
+    @Override
+    public String onTable(final Table table, final String transform, final Map<Object, Object> opts,
+            final Function<Cell, String> cellConverter) {
+        return dispatch(v -> v.onTable(table, transform, opts, cellConverter));
+    }
+
+    @Override
+    public String onPassthrough(final Block block, final String transform, final Map<Object, Object> opts,
+            final Supplier<String> contentSupplier) {
+        return dispatch(v -> v.onPassthrough(block, transform, opts, contentSupplier));
+    }
+
+    @Override
+    public String onQuote(final Block block, final String transform, final Map<Object, Object> opts,
+            final Supplier<String> contentSupplier) {
+        return dispatch(v -> v.onQuote(block, transform, opts, contentSupplier));
+    }
+
+    @Override
+    public String transformRawContent(final String value, final boolean complete) {
+        return (active != null ? active : primary).transformRawContent(value, complete);
+    }
+
+    private String dispatch(final Function<DocumentVisitor, String> call) {
+        if (active != null) {
+            return call.apply(active);
+        }
+        String result = null;
+        for (final DocumentVisitor delegate : delegates) {
+            active = delegate;
+            try {
+                final String output = call.apply(delegate);
+                if (delegate == primary) {
+                    result = output;
+                }
+            } finally {
+                active = null;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// state of the conversion of one document, forks of a parallel conversion get their own
+@Getter
+@RequiredArgsConstructor
+class ConversionContext {
+
+    private final DocumentVisitor visitor;
+
+    private final Metrics metrics;
+}
@@ -16,6 +16,11 @@ import org.asciidoctor.ast.Table;
 public interface DocumentVisitor {
     void setAggregator(final Aggregator aggregator);
 
+    // called before the visitor goes back to its pool, must drop any document state
+    default void reset() {
+        // no-op
+    }
+
     String onDocument(Document document, String transform, Map<Object, Object> opts,
                       Supplier<String> contentSupplier);
 
@@ -65,4 +70,14 @@ public interface DocumentVisitor {
     default String transformRawContent(final String value, final boolean complete) {
         return value;
     }
+
+    // isolated copy converting a top level section on another thread, null when not supported (yet)
+    default DocumentVisitor fork() {
+        return null;
+    }
+
+    // false means the fork output can't be used (conflicting state) and the section must be converted again
+    default boolean join(final DocumentVisitor fork) {
+        return false;
+    }
 }
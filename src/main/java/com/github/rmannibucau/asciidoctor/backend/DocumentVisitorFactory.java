@@ -0,0 +1,59 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+import com.github.rmannibucau.asciidoctor.backend.dita.DitaVisitor;
+
+@FunctionalInterface
+public interface DocumentVisitorFactory {
+
+    DocumentVisitor create();
+
+    // null means the first DocumentVisitorFactory registered with the ServiceLoader or dita
+    static DocumentVisitorFactory of(final Object visitor) {
+        if (visitor == null) {
+            final Iterator<DocumentVisitorFactory> factories = ServiceLoader
+                    .load(DocumentVisitorFactory.class, Thread.currentThread().getContextClassLoader()).iterator();
+            return factories.hasNext() ? factories.next() : DitaVisitor::new;
+        }
+        if (DocumentVisitorFactory.class.isInstance(visitor)) {
+            return DocumentVisitorFactory.class.cast(visitor);
+        }
+        if (DocumentVisitor.class.isInstance(visitor)) { // shared instance, caller owns its thread safety
+            final DocumentVisitor instance = DocumentVisitor.class.cast(visitor);
+            return () -> instance;
+        }
+        Class<?> type = null;
+        if (String.class.isInstance(visitor)) {
+            try {
+                type = Thread.currentThread().getContextClassLoader().loadClass(String.valueOf(visitor).trim());
+            } catch (final ClassNotFoundException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        if (Class.class.isInstance(visitor)) {
+            type = Class.class.cast(visitor);
+        }
+        if (type != null) {
+            final Constructor<?> constructor;
+            try {
+                constructor = type.getConstructor();
+            } catch (final NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+            return () -> {
+                try {
+                    return DocumentVisitor.class.cast(constructor.newInstance());
+                } catch (final InstantiationException | IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                } catch (final InvocationTargetException e) {
+                    throw new IllegalStateException(e.getTargetException());
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unsupported parameter: " + visitor);
+    }
+}
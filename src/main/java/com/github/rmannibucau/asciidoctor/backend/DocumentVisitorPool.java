@@ -0,0 +1,59 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import static java.util.Optional.ofNullable;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class DocumentVisitorPool {
+
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 60;
+
+    private final DocumentVisitorFactory factory;
+
+    private final BlockingQueue<DocumentVisitor> idle;
+
+    private final int maxVisitors;
+
+    private final Semaphore live; // acquired visitors, idle ones are bounded by it too
+
+    public DocumentVisitorPool(final DocumentVisitorFactory factory, final int maxVisitors) {
+        this.factory = factory;
+        this.maxVisitors = Math.max(1, maxVisitors);
+        this.idle = new ArrayBlockingQueue<>(this.maxVisitors);
+        this.live = new Semaphore(this.maxVisitors);
+    }
+
+    // waits for a visitor to be released when maxVisitors are in use, a converter never closed keeps its visitor forever
+    public DocumentVisitor acquire() {
+        try {
+            if (!live.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("No visitor released after " + ACQUIRE_TIMEOUT_SECONDS + "s, "
+                        + maxVisitors + " are in use, ensure GenericConverter instances are closed");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        try {
+            return ofNullable(idle.poll()).orElseGet(factory::create);
+        } catch (final RuntimeException re) {
+            live.release();
+            throw re;
+        }
+    }
+
+    public void release(final DocumentVisitor visitor) {
+        if (idle.contains(visitor)) { // already released
+            return;
+        }
+        try {
+            visitor.reset();
+            idle.offer(visitor);
+        } finally {
+            live.release();
+        }
+    }
+}
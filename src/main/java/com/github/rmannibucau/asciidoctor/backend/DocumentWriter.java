@@ -0,0 +1,11 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// a document rendered when it is written, avoids to keep big documents (maps) in memory
+@FunctionalInterface
+public interface DocumentWriter {
+
+    void write(Writer writer) throws IOException;
+}
@@ -7,8 +7,10 @@ import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.joining;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.ast.Block;
@@ -25,16 +27,23 @@ import org.asciidoctor.converter.ConverterFor;
 import org.asciidoctor.converter.StringConverter;
 import org.asciidoctor.converter.spi.ConverterRegistry;
 
-import com.github.rmannibucau.asciidoctor.backend.dita.DitaVisitor;
-
 @ConverterFor("dita")
 public class GenericConverter extends StringConverter implements ConverterRegistry, AutoCloseable {
 
-    // thanks adoctorj for the proxying, ServiceLoader etc leading to N instances
-    private static final ThreadLocal<DocumentVisitor> CONTEXTUAL_VISITOR = new ThreadLocal<>();
+    // thanks adoctorj for the proxying, ServiceLoader etc leading to N instances,
+    // only bound while the converter owning the visitor converts a document so nothing stays on the thread
+    private static final ThreadLocal<ConversionContext> CONTEXT = new ThreadLocal<>();
 
     private final boolean preambleAsParagraph;
 
+    private final boolean parallelSections;
+
+    private DocumentVisitorPool pool;
+
+    private DocumentVisitor visitor;
+
+    private Metrics metrics = Metrics.NOOP;
+
     public GenericConverter() { // for the SPI
         this("dita", emptyMap());
     }
@@ -42,30 +51,70 @@ public class GenericConverter extends StringConverter implements ConverterRegist
     public GenericConverter(final String backend, final Map<String, Object> opts) {
         super(backend, opts);
         this.preambleAsParagraph = "true".equalsIgnoreCase(opts.getOrDefault("preambleAsParagraph", "true").toString());
+        this.parallelSections = "true".equalsIgnoreCase(opts.getOrDefault("parallelSections", "false").toString());
     }
 
+    // the visitor is taken from the pool until close() so the converter must be used in a try-with-resources
     public void setAggregator(final Aggregator aggregator) {
-        ofNullable(CONTEXTUAL_VISITOR.get()).orElseGet(() -> {
-            final DocumentVisitor visitor = createVisitor(getOptions().get("visitor"));
-            visitor.setAggregator(aggregator);
-            CONTEXTUAL_VISITOR.set(visitor);
-            return visitor;
-        });
+        if (visitor == null) {
+            pool = ofNullable(getOptions().get("visitorPool")).map(DocumentVisitorPool.class::cast)
+                    .orElseGet(() -> new DocumentVisitorPool(DocumentVisitorFactory.of(getOptions().get("visitor")), 1));
+            visitor = pool.acquire();
+        }
+        visitor.setAggregator(aggregator);
+        metrics = ofNullable(aggregator.getMetrics()).orElse(Metrics.NOOP);
     }
 
     @Override
     public String convert(final ContentNode node, final String transform, final Map<Object, Object> opts) {
+        final ConversionContext previous = CONTEXT.get();
+        final boolean owner = visitor != null && transform == null && Document.class.isInstance(node);
+        if (owner) {
+            CONTEXT.set(new ConversionContext(visitor, metrics));
+        } else if (previous == null) {
+            throw new IllegalStateException("No visitor bound to convert " + node
+                    + ", convert the document with a converter initialized with setAggregator()");
+        }
+        try {
+            final Metrics bound = context().getMetrics();
+            if (!bound.isEnabled()) { // getNodeName() is a jruby call, don't pay it for nothing
+                return doConvert(node, transform, opts);
+            }
+            final Metrics.Measure measure = bound.start("convert", node.getNodeName());
+            String output = null;
+            try {
+                output = doConvert(node, transform, opts);
+                return output;
+            } finally {
+                measure.stop(output == null ? -1 : output.length());
+            }
+        } finally {
+            if (owner) {
+                if (previous == null) {
+                    CONTEXT.remove();
+                } else {
+                    CONTEXT.set(previous);
+                }
+            }
+        }
+    }
+
+    private String doConvert(final ContentNode node, final String transform, final Map<Object, Object> opts) {
         if (Document.class.isInstance(node)) {
             final Document document = Document.class.cast(node);
-            return CONTEXTUAL_VISITOR.get().onDocument(document, transform, opts, () -> convertChildren(document));
+            // only the root document, nested ones (tables) stay sequential, the document can disable it too
+            final boolean parallel = transform == null && ofNullable(opts.get("parallelSections")).map(String::valueOf)
+                    .map(Boolean::parseBoolean).orElse(parallelSections);
+            return context().getVisitor().onDocument(document, transform, opts,
+                    () -> parallel ? convertChildrenInParallel(document) : convertChildren(document));
         } else if (Section.class.isInstance(node)) {
             final Section section = Section.class.cast(node);
             if (section.getBlocks().isEmpty()) {
                 return "";
             }
-            return CONTEXTUAL_VISITOR.get().onSection(section, transform, opts, () -> convertChildren(section));
+            return context().getVisitor().onSection(section, transform, opts, () -> convertChildren(section));
         } else if (Block.class.isInstance(node)) {
-            final DocumentVisitor visitor = CONTEXTUAL_VISITOR.get();
+            final DocumentVisitor visitor = context().getVisitor();
 
             final Block block = Block.class.cast(node);
             final String context = block.getContext();
@@ -102,11 +151,11 @@ public class GenericConverter extends StringConverter implements ConverterRegist
                 throw new IllegalArgumentException("Unsupported block type: " + context);
             }
         } else if (DescriptionList.class.isInstance(node)) {
-            return CONTEXTUAL_VISITOR.get().onDescriptionList(DescriptionList.class.cast(node), transform, opts);
+            return context().getVisitor().onDescriptionList(DescriptionList.class.cast(node), transform, opts);
         } else if (List.class.isInstance(node)) {
-            return CONTEXTUAL_VISITOR.get().onList(List.class.cast(node), transform, opts);
+            return context().getVisitor().onList(List.class.cast(node), transform, opts);
         } else if (PhraseNode.class.isInstance(node)) {
-            final DocumentVisitor visitor = CONTEXTUAL_VISITOR.get();
+            final DocumentVisitor visitor = context().getVisitor();
 
             final PhraseNode phraseNode = PhraseNode.class.cast(node);
             final String context = phraseNode.getContext();
@@ -140,7 +189,7 @@ public class GenericConverter extends StringConverter implements ConverterRegist
                 throw new IllegalArgumentException("Unsupported phrase node type: " + type + ", content: " + context);
             }
         } else if (Table.class.isInstance(node)) {
-            return CONTEXTUAL_VISITOR.get().onTable(Table.class.cast(node), transform, opts,
+            return context().getVisitor().onTable(Table.class.cast(node), transform, opts,
                     cell -> of(cell).filter(c -> "asciidoc".equalsIgnoreCase(c.getStyle())).map(Cell::getInnerDocument)
                             .map(d -> convert(d, "table", singletonMap("preambleAsParagraph", preambleAsParagraph)))
                             .orElseGet(cell::getText));
@@ -155,43 +204,78 @@ public class GenericConverter extends StringConverter implements ConverterRegist
                 .orElseThrow(() -> new IllegalStateException("No child for " + node));
     }
 
-    @Override
-    public void register(final Asciidoctor asciidoctor) {
-        asciidoctor.javaConverterRegistry().register(GenericConverter.class);
-    }
+    // output is the sequential one: forks are joined in order and a fork the visitor rejects is converted again
+    private String convertChildrenInParallel(final Document document) {
+        final java.util.List<StructuralNode> blocks = ofNullable(document.getBlocks()).filter(b -> !b.isEmpty())
+                .orElseThrow(() -> new IllegalStateException("No child for " + document));
+        final DocumentVisitor visitor = context().getVisitor();
+        final Metrics metrics = context().getMetrics();
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final String[] outputs = new String[blocks.size()];
+        final DocumentVisitor[] forks = new DocumentVisitor[blocks.size()];
+        final Map<Integer, ForkJoinTask<String>> tasks = new HashMap<>();
 
-    private DocumentVisitor createVisitor(final Object visitor) {
-        if (visitor == null) {
-            return new DitaVisitor();
+        int first = 0;
+        while (first < blocks.size() && (forks[first] = visitor.fork()) == null) { // visitor not ready
+            outputs[first] = blocks.get(first).convert();
+            first++;
         }
-        if (DocumentVisitor.class.isInstance(visitor)) {
-            return DocumentVisitor.class.cast(visitor);
-        }
-        Class<?> type = null;
-        if (String.class.isInstance(visitor)) {
-            try {
-                type = Thread.currentThread().getContextClassLoader().loadClass(String.valueOf(visitor).trim());
-            } catch (final ClassNotFoundException e) {
-                throw new IllegalArgumentException(e);
+        for (int i = first; i < blocks.size(); i++) {
+            if (i > first) {
+                forks[i] = visitor.fork();
             }
+            if (forks[i] == null) {
+                continue;
+            }
+            final StructuralNode block = blocks.get(i);
+            final DocumentVisitor fork = forks[i];
+            tasks.put(i, ForkJoinPool.commonPool().submit(() -> {
+                final Thread thread = Thread.currentThread();
+                final ClassLoader oldLoader = thread.getContextClassLoader();
+                thread.setContextClassLoader(loader);
+                // join() can run the task on the converting thread so its context must be restored, not removed
+                final ConversionContext previous = CONTEXT.get();
+                CONTEXT.set(new ConversionContext(fork, metrics));
+                try {
+                    return block.convert();
+                } finally {
+                    if (previous == null) {
+                        CONTEXT.remove();
+                    } else {
+                        CONTEXT.set(previous);
+                    }
+                    thread.setContextClassLoader(oldLoader);
+                }
+            }));
         }
-        if (Class.class.isInstance(visitor)) {
-            type = Class.class.cast(visitor);
-        }
-        if (type != null) {
-            try {
-                return DocumentVisitor.class.cast(type.getConstructor().newInstance());
-            } catch (final InstantiationException | IllegalAccessException | NoSuchMethodException e) {
-                throw new IllegalStateException(e);
-            } catch (final InvocationTargetException e) {
-                throw new IllegalStateException(e.getTargetException());
+        for (int i = first; i < blocks.size(); i++) {
+            final ForkJoinTask<String> task = tasks.get(i);
+            if (task != null) {
+                final String output = task.join();
+                if (visitor.join(forks[i])) {
+                    outputs[i] = output;
+                    continue;
+                }
             }
+            outputs[i] = blocks.get(i).convert();
         }
-        throw new IllegalArgumentException("Unsupported parameter: " + visitor);
+        return String.join("\n", outputs);
+    }
+
+    @Override
+    public void register(final Asciidoctor asciidoctor) {
+        asciidoctor.javaConverterRegistry().register(GenericConverter.class);
     }
 
     @Override
     public void close() {
-        CONTEXTUAL_VISITOR.remove();
+        if (visitor != null) {
+            pool.release(visitor);
+            visitor = null;
+        }
+    }
+
+    private static ConversionContext context() {
+        return CONTEXT.get();
     }
 }
@@ -0,0 +1,43 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// peaks of the heap pools don't happen at the same time so they can't be summed, the used heap is sampled instead
+public class HeapSampler implements AutoCloseable {
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final AtomicLong peak = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler;
+
+    public HeapSampler(final long periodMs) {
+        sample();
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "adoc2dita-heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public long getPeak() {
+        sample();
+        return peak.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        final long used = memory.getHeapMemoryUsage().getUsed();
+        peak.accumulateAndGet(used, Math::max);
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// requires a JVM with jdk.jfr (java 11 or 8u262+), only loaded (reflectively) when metrics=jfr,
+// not compiled by java 8 builds (see the jdk8 profile)
+public class JfrMetrics implements Metrics {
+
+    private final EventType type = EventType.getEventType(ConversionEvent.class);
+
+    // false until a recording enables the event
+    @Override
+    public boolean isEnabled() {
+        return type.isEnabled();
+    }
+
+    @Override
+    public Measure start(final String category, final String name) {
+        final ConversionEvent event = new ConversionEvent();
+        if (!event.isEnabled()) {
+            return Measure.NOOP;
+        }
+        event.begin();
+        return size -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = category;
+                event.name = name;
+                event.size = size;
+                event.commit();
+            }
+        };
+    }
+
+    @Name("com.github.rmannibucau.asciidoctor2dita.Conversion")
+    @Label("Conversion Step")
+    @Category("Asciidoctor2Dita")
+    static class ConversionEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Name")
+        String name;
+
+        @Label("Size")
+        long size;
+    }
+}
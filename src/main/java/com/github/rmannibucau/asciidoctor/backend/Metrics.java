@@ -0,0 +1,41 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+@FunctionalInterface
+public interface Metrics {
+
+    Metrics NOOP = new Metrics() {
+
+        @Override
+        public Measure start(final String category, final String name) {
+            return Measure.NOOP;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    Measure start(String category, String name);
+
+    // callers skip computing the measure name (jruby calls) when false
+    default boolean isEnabled() {
+        return true;
+    }
+
+    @FunctionalInterface
+    interface Measure extends AutoCloseable {
+
+        Measure NOOP = size -> {
+            // no-op
+        };
+
+        // size is the payload (chars or bytes) the measured operation handled, -1 if unknown
+        void stop(long size);
+
+        @Override
+        default void close() {
+            stop(-1);
+        }
+    }
+}
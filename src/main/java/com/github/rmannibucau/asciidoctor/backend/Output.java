@@ -0,0 +1,14 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import java.io.File;
+
+import lombok.Data;
+
+@Data
+public class Output {
+
+    // DocumentVisitor class name
+    private String visitor;
+
+    private File target;
+}
@@ -0,0 +1,20 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import java.io.File;
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class Variant {
+
+    // used in the bundle name and as default classifier
+    private String name;
+
+    private File target;
+
+    private String classifier;
+
+    // merged over the mojo attributes
+    private Map<String, String> attributes;
+}
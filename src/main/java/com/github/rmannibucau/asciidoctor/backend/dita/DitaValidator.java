@@ -0,0 +1,228 @@
+package com.github.rmannibucau.asciidoctor.backend.dita;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableCollection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// not a DTD validation, only the subset of the concept/map content rules the visitor can break
+public class DitaValidator extends XMLFilterImpl {
+
+    private static final Collection<String> BLOCKS = set("p", "ul", "ol", "sl", "dl", "codeblock", "pre", "lines", "fig",
+            "image", "note", "lq", "simpletable", "table", "div", "draft-comment", "object");
+
+    private static final Collection<String> INLINES = set("b", "i", "u", "sup", "sub", "tt", "codeph", "ph", "xref",
+            "image", "keyword", "term", "q", "cite", "fn", "indexterm", "draft-comment", "data");
+
+    private static final Map<String, Collection<String>> ALLOWED_CHILDREN = new HashMap<>();
+
+    private static final Map<String, Collection<String>> FORBIDDEN_CHILDREN = new HashMap<>();
+
+    private static final Map<String, Collection<String>> REQUIRED_ATTRIBUTES = new HashMap<>();
+
+    private static final Collection<String> NO_TEXT = set("concept", "conbody", "map", "topicref", "ul", "ol", "sl", "dl",
+            "simpletable", "sthead", "strow");
+
+    static {
+        ALLOWED_CHILDREN.put("concept", set("title", "titlealts", "shortdesc", "abstract", "prolog", "conbody",
+                "related-links", "concept"));
+        ALLOWED_CHILDREN.put("conbody", union(BLOCKS, set("section", "example", "bodydiv", "conbodydiv")));
+        ALLOWED_CHILDREN.put("map", set("title", "topicmeta", "topicref", "mapref", "keydef", "topicgroup", "topichead",
+                "reltable", "anchor", "navref"));
+        ALLOWED_CHILDREN.put("topicref", set("topicmeta", "topicref", "mapref", "topicgroup", "topichead", "keydef"));
+        ALLOWED_CHILDREN.put("ul", set("li"));
+        ALLOWED_CHILDREN.put("ol", set("li"));
+        ALLOWED_CHILDREN.put("simpletable", set("sthead", "strow"));
+        ALLOWED_CHILDREN.put("sthead", set("stentry"));
+        ALLOWED_CHILDREN.put("strow", set("stentry"));
+        ALLOWED_CHILDREN.put("fig", union(BLOCKS, set("title", "desc")));
+        ALLOWED_CHILDREN.put("section", union(union(BLOCKS, INLINES), set("title", "sectiondiv")));
+        ALLOWED_CHILDREN.put("sectiondiv", union(union(BLOCKS, INLINES), set("sectiondiv")));
+
+        FORBIDDEN_CHILDREN.put("p", set("p", "section", "sectiondiv", "title"));
+        FORBIDDEN_CHILDREN.put("li", set("li", "section", "sectiondiv", "title"));
+        FORBIDDEN_CHILDREN.put("stentry", set("section", "sectiondiv", "title", "simpletable"));
+        FORBIDDEN_CHILDREN.put("note", set("section", "sectiondiv", "title", "note"));
+        FORBIDDEN_CHILDREN.put("title", union(BLOCKS, set("section", "sectiondiv", "title")));
+
+        REQUIRED_ATTRIBUTES.put("concept", set("id"));
+        REQUIRED_ATTRIBUTES.put("map", set("id"));
+        REQUIRED_ATTRIBUTES.put("topicref", set("href"));
+        REQUIRED_ATTRIBUTES.put("mapref", set("href"));
+        REQUIRED_ATTRIBUTES.put("image", set("href"));
+        REQUIRED_ATTRIBUTES.put("xref", set("href"));
+    }
+
+    private final String file;
+
+    private final String expectedRoot;
+
+    @Getter
+    private final Collection<String> errors = new ArrayList<>();
+
+    private final Deque<Element> elements = new ArrayDeque<>();
+
+    private Locator locator;
+
+    public DitaValidator(final String file) {
+        this.file = file;
+        this.expectedRoot = file.endsWith(".ditamap") ? "map" : "concept";
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    // when the document is not formatted the validation is the only parsing of the content
+    public void validate(final XMLReader reader, final String content) {
+        validate(reader, new InputSource(new StringReader(content)));
+    }
+
+    public void validate(final XMLReader reader, final InputSource content) {
+        setParent(reader);
+        try {
+            parse(content);
+        } catch (final SAXException e) {
+            // already reported through fatalError()
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // parse() replaces the resolver of the parent by this filter so the parent one (DTD stubs) must be kept
+    @Override
+    public void setParent(final XMLReader parent) {
+        super.setParent(parent);
+        setEntityResolver(parent.getEntityResolver());
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+        this.locator = locator;
+        super.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes atts)
+            throws SAXException {
+        final String name = localName == null || localName.isEmpty() ? qName : localName;
+        final Element parent = elements.peek();
+        if (parent == null) {
+            if (!expectedRoot.equals(name)) {
+                error("root element is <" + name + "> instead of <" + expectedRoot + ">");
+            }
+        } else {
+            if (parent.allowed != null && !parent.allowed.contains(name)) {
+                error("<" + name + "> is not allowed in <" + parent.name + ">");
+            }
+            if (parent.forbidden != null && parent.forbidden.contains(name)) {
+                error("<" + name + "> is not allowed in <" + parent.name + ">");
+            }
+            if ("concept".equals(parent.name) && parent.children == 0 && !"title".equals(name)) {
+                error("<concept> must start with a <title>");
+            }
+            parent.children++;
+        }
+        final Collection<String> required = REQUIRED_ATTRIBUTES.get(name);
+        if (required != null) { // no stream, it is the hot path of the formatting
+            for (final String attribute : required) {
+                if (atts.getValue(attribute) == null) {
+                    error("<" + name + "> requires a " + attribute + " attribute");
+                }
+            }
+        }
+        // rules are resolved once per element and not for each of its children
+        elements.push(new Element(name, ALLOWED_CHILDREN.get(name), FORBIDDEN_CHILDREN.get(name), NO_TEXT.contains(name)));
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        final Element element = elements.pop();
+        if ("concept".equals(element.name) && element.children == 0) {
+            error("<concept> must have a <title>");
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        final Element parent = elements.peek();
+        if (parent != null && parent.noText && !parent.text) {
+            for (int i = start; i < start + length; i++) {
+                if (!Character.isWhitespace(ch[i])) {
+                    parent.text = true;
+                    error("text is not allowed in <" + parent.name + ">");
+                    break;
+                }
+            }
+        }
+        super.characters(ch, start, length);
+    }
+
+    @Override
+    public void error(final SAXParseException e) throws SAXException {
+        errors.add(location(e.getLineNumber(), e.getColumnNumber()) + e.getMessage());
+        super.error(e);
+    }
+
+    @Override
+    public void fatalError(final SAXParseException e) throws SAXException {
+        errors.add(location(e.getLineNumber(), e.getColumnNumber()) + "not well formed: " + e.getMessage());
+        super.fatalError(e);
+    }
+
+    private void error(final String message) {
+        errors.add((locator == null ? file + ": " : location(locator.getLineNumber(), locator.getColumnNumber()))
+                + message);
+    }
+
+    private String location(final int line, final int column) {
+        return file + ":" + line + ":" + column + ": ";
+    }
+
+    private static Collection<String> set(final String... values) {
+        return unmodifiableCollection(new HashSet<>(asList(values)));
+    }
+
+    private static Collection<String> union(final Collection<String> first, final Collection<String> second) {
+        final Collection<String> union = new HashSet<>(first);
+        union.addAll(second);
+        return unmodifiableCollection(union);
+    }
+
+    @RequiredArgsConstructor
+    private static class Element {
+
+        private final String name;
+
+        private final Collection<String> allowed;
+
+        private final Collection<String> forbidden;
+
+        private final boolean noText;
+
+        private int children;
+
+        private boolean text;
+    }
+}
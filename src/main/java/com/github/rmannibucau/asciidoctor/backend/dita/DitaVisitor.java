@@ -1,13 +1,21 @@
 package com.github.rmannibucau.asciidoctor.backend.dita;
 
+import static java.util.Collections.singletonList;
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.joining;
 import static org.apache.commons.text.StringEscapeUtils.unescapeHtml4;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.function.Function;
@@ -51,13 +59,63 @@ public class DitaVisitor implements DocumentVisitor {
 
     private VisitedSection currentSection;
 
+    private int rootLevel;
+
     private boolean inTable = false;
 
+    private int chunkDepth;
+
+    private int chunkMinSize;
+
+    private Collection<String> idsAtFork;
+
     @Override
     public void setAggregator(final Aggregator aggregator) {
         this.aggregator = aggregator;
     }
 
+    @Override
+    public void reset() {
+        aggregator = null;
+        inTable = false;
+        resetDocumentState();
+    }
+
+    // forks start from a placeholder root since next top level sections are children of the root one
+    @Override
+    public DocumentVisitor fork() {
+        if (rootSection == null || currentSection != rootSection || inTable) {
+            return null;
+        }
+        final DitaVisitor fork = new DitaVisitor();
+        fork.aggregator = ofNullable(aggregator).map(Aggregator::fork).orElse(null);
+        fork.rootSection = new VisitedSection(rootSection.id, rootSection.title, null);
+        fork.currentSection = fork.rootSection;
+        fork.rootLevel = rootLevel;
+        fork.chunkDepth = chunkDepth;
+        fork.chunkMinSize = chunkMinSize;
+        fork.ids.addAll(ids);
+        fork.idsAtFork = new HashSet<>(ids);
+        return fork;
+    }
+
+    // an id allocated by a previous sibling would have been suffixed in a sequential conversion
+    @Override
+    public boolean join(final DocumentVisitor fork) {
+        final DitaVisitor visitor = DitaVisitor.class.cast(fork);
+        final Collection<String> allocated = new HashSet<>(visitor.ids);
+        allocated.removeAll(visitor.idsAtFork);
+        if (allocated.stream().anyMatch(ids::contains)) {
+            return false;
+        }
+        ids.addAll(allocated);
+        rootSection.children.addAll(visitor.rootSection.children);
+        if (aggregator != null) {
+            aggregator.merge(visitor.aggregator);
+        }
+        return true;
+    }
+
     @Override
     public String onDocument(final Document document, final String transform, final Map<Object, Object> opts,
             final Supplier<String> contentSupplier) {
@@ -65,30 +123,42 @@ public class DitaVisitor implements DocumentVisitor {
             return contentSupplier.get();
         }
 
-        rootSection = null;
-        ids.clear();
-        ids.add("generated-");
+        resetDocumentState();
+        chunkDepth = intOption(opts, "chunkDepth");
+        chunkMinSize = intOption(opts, "chunkMinSize");
 
         final String filename = ofNullable(opts.remove("originalFile")).map(Object::toString).orElse(null);
         final String title = document.getDoctitle();
         final String id = extractId(document, title);
         final String content = contentSupplier.get();
 
-        if (currentSection == rootSection && rootSection != null && !rootSection.children.isEmpty()) {
+        // when all the subsections were inlined the map references the root topic to keep it in the navigation
+        if (currentSection == rootSection && rootSection != null
+                && (!rootSection.children.isEmpty() || !rootSection.inlined.isEmpty())) {
             final String name = "dm-" + sanitizeId(id);
-            final String map = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
-                    + "<!DOCTYPE map PUBLIC \"-//OASIS//DTD DITA Map//EN\" \"map.dtd\">\n" + "<map id=\"" + name
-                    + "\" xml:lang=\"en\">\n" + " <title>" + title + "</title>\n"
-                    // todo: manage <mapref href="xxx.ditamap"/>?
-                    + rootSection.children.stream().map(VisitedSection::toDita).collect(joining("\n")) + "</map>";
-
-            if (aggregator != null) {
-                final String baseName = ofNullable(filename).map(f -> f.replaceFirst(".adoc", ""))
-                        .orElseGet(() -> sanitizeId(id));
-                aggregator.getDocuments().put("dm-" + baseName + ".ditamap", map);
+            final String baseName = ofNullable(filename).map(f -> f.replaceFirst(".adoc", ""))
+                    .orElseGet(() -> sanitizeId(id));
+            final Collection<VisitedSection> sections = rootSection.children.isEmpty() ? singletonList(rootSection)
+                    : rootSection.children;
+            if (aggregator == null) { // no submap since they are aggregated documents
+                final StringWriter map = new StringWriter();
+                try {
+                    writeMap(map, name, title, sections, 1, true, null);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return map.toString();
             }
 
-            return map;
+            // maps can be huge so they are rendered from the section tree when they are written
+            final MapSplit split = new MapSplit(baseName, intOption(opts, "mapSplitDepth"), intOption(opts, "mapSplitSize"),
+                    sections);
+            aggregator.getStreamedDocuments().put("dm-" + baseName + ".ditamap",
+                    writer -> writeMap(writer, name, title, sections, 1, true, split));
+            split.findSubmaps(sections).forEach(submap -> aggregator.getStreamedDocuments().put(submap.name + ".ditamap",
+                    writer -> writeMap(writer, submap.name, submap.section.title, singletonList(submap.section),
+                            submap.depth, false, split)));
+            return "";
         }
         return toConcept(title, content, "c-" + sanitizeId(ofNullable(id).orElse("generated-")));
     }
@@ -100,13 +170,23 @@ public class DitaVisitor implements DocumentVisitor {
         final String id = extractId(section, null);
 
         final String name = "c-" + sanitizeId(ofNullable(id).orElseGet(() -> extractId(section, title)));
+        final VisitedSection self;
         if (rootSection == null) {
-            rootSection = new VisitedSection(name, null);
-            currentSection = rootSection;
+            self = new VisitedSection(name, title, null);
+            rootSection = self;
+            rootLevel = section.getLevel();
         } else {
-            final VisitedSection self = new VisitedSection(name, currentSection);
+            self = new VisitedSection(name, title, currentSection);
             currentSection.children.add(self);
-            currentSection = self;
+        }
+        currentSection = self;
+
+        // children are converted once, a second conversion would register their sections twice
+        final String children;
+        try {
+            children = contentSupplier.get();
+        } finally {
+            currentSection = ofNullable(self.parent).orElse(rootSection);
         }
 
         final Function<Boolean, String> content = inSection -> {
@@ -114,18 +194,24 @@ public class DitaVisitor implements DocumentVisitor {
             final String tag = inSection ? "sectiondiv" : "section";
             return "<" + tag + ofNullable(id).map(i -> " id=\"" + id + "\"").orElse("") + ">"
                     + ofNullable(title).map(t -> inSection ? ("<b>" + t + "</b>") : ("<title>" + t + "</title>\n")).orElse("")
-                    + contentSupplier.get() + "</" + tag + ">\n";
+                    + children + "</" + tag + ">\n";
         };
-        try {
-            return content.apply(currentSection != rootSection);
-        } finally {
-            currentSection = ofNullable(currentSection.parent).orElse(rootSection);
-
-            if (aggregator != null) {
-                final String concept = toConcept(title, content.apply(false), name);
-                aggregator.getDocuments().put(name + ".dita", concept);
+        if (aggregator != null) {
+            final String standalone = content.apply(false);
+            // top level sections are always topics since the root one is already written when they are visited
+            if (self == rootSection || section.getLevel() <= rootLevel || isChunk(section, standalone)) {
+                aggregator.getDocuments().put(name + ".dita", toConcept(title, standalone, name));
+                // the second conversion round uses it to resolve xrefs to these sections
+                self.inlined.forEach(inlined -> aggregator.getInlinedSections().put(inlined, name));
+            } else { // stays inlined in its parent topic so drop it from the map too
+                self.parent.children.remove(self);
+                if (id != null) {
+                    self.parent.inlined.add(id);
+                }
+                self.parent.inlined.addAll(self.inlined);
             }
         }
+        return content.apply(self != rootSection);
     }
 
     @Override
@@ -224,6 +310,11 @@ public class DitaVisitor implements DocumentVisitor {
 
     @Override
     public String onXref(final String value, final String ref) {
+        final String topic = aggregator.findContainingTopic(ref);
+        if (topic != null) { // section inlined in another topic so no c-<id>.dita, target it inside its topic
+            return "<xref href=\"" + topic + ".dita#" + topic + "/" + ref + "\">" + value + "</xref>";
+        }
+
         String link = ref;
         int anchor = link.indexOf('#');
         String anchorValue = "";
@@ -267,6 +358,70 @@ public class DitaVisitor implements DocumentVisitor {
         return (complete ? "<![CDATA[" : "") + UNESCAPE.translate(value) + (complete ? "]]>" : "");
     }
 
+    // iterative (no recursion nor intermediate strings) since maps can have a lot of deeply nested topicrefs,
+    // static since it runs when the documents are written, once this visitor was reset
+    static void writeMap(final Writer writer, final String name, final String title,
+            final Collection<VisitedSection> sections, final int depth, final boolean splitSections, final MapSplit split)
+            throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE map PUBLIC \"-//OASIS//DTD DITA Map//EN\" \"map.dtd\">\n" + "<map id=\"" + name
+                + "\" xml:lang=\"en\">\n");
+        if (title != null) {
+            writer.write(" <title>" + title + "</title>\n");
+        }
+
+        final Deque<MapFrame> stack = new ArrayDeque<>();
+        stack.push(new MapFrame(null, sections.iterator(), depth, splitSections));
+        while (!stack.isEmpty()) {
+            final MapFrame frame = stack.peek();
+            if (!frame.children.hasNext()) {
+                stack.pop();
+                if (frame.owner != null) {
+                    writer.write("</topicref>\n");
+                }
+                continue;
+            }
+
+            final VisitedSection section = frame.children.next();
+            if (frame.first) {
+                frame.first = false;
+            } else {
+                writer.write("\n");
+            }
+
+            // when the section is deep or big enough it is moved to its own ditamap and referenced through a mapref
+            if (frame.splittable && split != null && split.shouldSplit(section, frame.depth)) {
+                writer.write("<mapref href=\"" + split.submapName(section) + ".ditamap\"/>\n");
+            } else if (section.children.isEmpty()) {
+                writer.write("<topicref href=\"" + section.id + ".dita\"/>\n");
+            } else {
+                writer.write("<topicref href=\"" + section.id + ".dita\">\n");
+                stack.push(new MapFrame(section, section.children.iterator(), frame.depth + 1, true));
+            }
+        }
+        writer.write("</map>");
+    }
+
+    private void resetDocumentState() {
+        rootSection = null;
+        currentSection = null;
+        rootLevel = 0;
+        chunkDepth = 0;
+        chunkMinSize = 0;
+        ids.clear();
+        ids.add("generated-");
+    }
+
+    private boolean isChunk(final Section section, final String content) {
+        return (chunkDepth <= 0 || section.getLevel() <= chunkDepth)
+                && (chunkMinSize <= 0 || content.length() >= chunkMinSize);
+    }
+
+    private int intOption(final Map<Object, Object> opts, final String key) {
+        return ofNullable(opts.get(key)).map(String::valueOf).map(String::trim).filter(v -> !v.isEmpty())
+                .map(Integer::parseInt).orElse(0);
+    }
+
     private String sanitizeId(final String id) {
         return id.replaceFirst("^_*", "").replaceFirst("/", "_");
     }
@@ -326,19 +481,103 @@ public class DitaVisitor implements DocumentVisitor {
     }
 
     @RequiredArgsConstructor
-    private static class VisitedSection {
+    static class VisitedSection {
 
         private final String id;
 
+        private final String title;
+
         private final VisitedSection parent;
 
-        private final Collection<VisitedSection> children = new ArrayList<>();
+        final Collection<VisitedSection> children = new ArrayList<>();
+
+        private final Collection<String> inlined = new ArrayList<>(); // ids of the sections inlined in this one
+    }
+
+    static class MapSplit {
+
+        private final String baseName;
+
+        private final int depth; // <= 0 means disabled
+
+        private final int size; // <= 0 means disabled
+
+        private final Map<VisitedSection, Integer> sizes = new IdentityHashMap<>();
+
+        MapSplit(final String baseName, final int depth, final int size, final Collection<VisitedSection> roots) {
+            this.baseName = baseName;
+            this.depth = depth;
+            this.size = size;
+            if (size > 0) { // subtree sizes computed bottom-up from the reversed pre-order, no recursion
+                final java.util.List<VisitedSection> preOrder = new ArrayList<>();
+                final Deque<VisitedSection> stack = new ArrayDeque<>(roots);
+                while (!stack.isEmpty()) {
+                    final VisitedSection section = stack.pop();
+                    preOrder.add(section);
+                    section.children.forEach(stack::push);
+                }
+                for (int i = preOrder.size() - 1; i >= 0; i--) {
+                    final VisitedSection section = preOrder.get(i);
+                    sizes.put(section, 1 + section.children.stream().mapToInt(sizes::get).sum());
+                }
+            }
+        }
 
-        String toDita() {
-            final boolean hasChild = !children.isEmpty();
-            return "<topicref href=\"" + id + ".dita\""
-                    + (hasChild ? ">\n" + children.stream().map(VisitedSection::toDita).collect(joining("\n")) + "</topicref>\n"
-                            : "/>\n");
+        boolean shouldSplit(final VisitedSection section, final int sectionDepth) {
+            return !section.children.isEmpty()
+                    && ((depth > 0 && sectionDepth == depth) || (size > 0 && sizes.get(section) >= size));
         }
+
+        // own prefix, a "dm-" one can collide with the main map of another document
+        String submapName(final VisitedSection section) {
+            return "sm-" + baseName + "-" + section.id.replaceFirst("^c-", "");
+        }
+
+        // same walk than writeMap() but without writing: a split section is written in its submap with its subtree
+        Collection<Submap> findSubmaps(final Collection<VisitedSection> roots) {
+            final Collection<Submap> submaps = new ArrayList<>();
+            final Deque<VisitedSection> sections = new ArrayDeque<>();
+            final Deque<Integer> depths = new ArrayDeque<>();
+            roots.forEach(root -> {
+                sections.push(root);
+                depths.push(1);
+            });
+            while (!sections.isEmpty()) {
+                final VisitedSection section = sections.pop();
+                final int sectionDepth = depths.pop();
+                if (shouldSplit(section, sectionDepth)) {
+                    submaps.add(new Submap(submapName(section), section, sectionDepth));
+                }
+                section.children.forEach(child -> {
+                    sections.push(child);
+                    depths.push(sectionDepth + 1);
+                });
+            }
+            return submaps;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class MapFrame {
+
+        private final VisitedSection owner; // null for the map itself
+
+        private final Iterator<VisitedSection> children;
+
+        private final int depth;
+
+        private final boolean splittable;
+
+        private boolean first = true;
+    }
+
+    @RequiredArgsConstructor
+    static class Submap {
+
+        final String name;
+
+        final VisitedSection section;
+
+        final int depth;
     }
 }
@@ -0,0 +1,88 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+// body attribute entries are replayed in the shared document attributes while converting, sections must see them in order
+public class ParallelSectionsTest {
+
+    private static final String DOCUMENT = "= Product\n\n"
+            + "== Install\n\n:product: Alpha\n\nInstall {product}.\n\n"
+            + "== Upgrade\n\n:product: Beta\n\nUpgrade to {product}.\n\n"
+            + "== Run\n\nRun {product}.\n\n"
+            + "== Uninstall\n\n:product: Gamma\n\nUninstall {product}.\n";
+
+    @Test
+    public void attributeEntriesKeepTheSequentialOutput() throws Exception {
+        final File root = new File("target/parallel-sections");
+        delete(root);
+        final File sources = new File(root, "adoc");
+        sources.mkdirs();
+        Files.write(new File(sources, "product.adoc").toPath(), DOCUMENT.getBytes(UTF_8));
+
+        final Map<String, String> sequential = convert(root, sources, false);
+        final Map<String, String> parallel = convert(root, sources, true);
+        assertEquals(sequential, parallel);
+        assertTrue(sequential.toString(), sequential.values().stream().anyMatch(content -> content.contains("Run Beta.")));
+    }
+
+    private Map<String, String> convert(final File root, final File sources, final boolean parallelSections)
+            throws Exception {
+        final File target = new File(root, parallelSections ? "parallel" : "sequential");
+        final Adoc2DitaMojo mojo = new Adoc2DitaMojo();
+        set(mojo, "sources", singletonList(sources));
+        set(mojo, "target", target);
+        set(mojo, "images", new File(root, "images"));
+        set(mojo, "preambleAsParagraph", "false");
+        set(mojo, "format", true);
+        set(mojo, "formats", emptyList());
+        set(mojo, "attach", false);
+        set(mojo, "skipIfUpToDate", false);
+        set(mojo, "parallelSections", parallelSections);
+        set(mojo, "metrics", "none");
+        set(mojo, "buildDirectory", root);
+        set(mojo, "artifactId", "parallel-sections");
+        mojo.setLog(new SystemStreamLog());
+        mojo.execute();
+
+        final Map<String, String> files = new TreeMap<>();
+        try (final Stream<Path> paths = Files.walk(target.toPath())) {
+            for (final Path path : paths.filter(Files::isRegularFile).collect(toList())) {
+                files.put(target.toPath().relativize(path).toString(), new String(Files.readAllBytes(path), UTF_8));
+            }
+        }
+        return files;
+    }
+
+    private void set(final Adoc2DitaMojo mojo, final String name, final Object value) throws ReflectiveOperationException {
+        final Field field = Adoc2DitaMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    private void delete(final File root) throws IOException {
+        if (!root.exists()) {
+            return;
+        }
+        try (final Stream<Path> paths = Files.walk(root.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
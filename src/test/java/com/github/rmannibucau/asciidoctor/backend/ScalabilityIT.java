@@ -0,0 +1,217 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+// runs the goal on synthetic corpora of growing sizes, mvn verify -Pscalability, see the adoc2dita.scalability.* properties
+public class ScalabilityIT {
+
+    private static final Pattern STATISTICS = Pattern.compile(
+            "adoc2dita statistics: files=(\\d+), duration=(\\d+)ms, throughput=([0-9.]+) files/s, peakHeap=(\\d+)MB");
+
+    private final File work = new File(System.getProperty("adoc2dita.scalability.work", "target/adoc2dita-scalability"));
+
+    private final File trend = new File(System.getProperty("adoc2dita.scalability.trend", new File(work, "trend.csv").getPath()));
+
+    @Test
+    public void scalability() throws Exception {
+        final List<Integer> sizes = Stream.of(System.getProperty("adoc2dita.scalability.sizes", "100,1000,10000,50000")
+                .split(",")).map(String::trim).filter(s -> !s.isEmpty()).map(Integer::parseInt).sorted().collect(toList());
+        final double minThroughput = Double.parseDouble(System.getProperty("adoc2dita.scalability.minThroughput", "5"));
+        final long maxPeakHeapMb = Long.getLong("adoc2dita.scalability.maxPeakHeapMb", 4096);
+        // time per file of a corpus compared to the previous (smaller) one, 1 means perfectly linear
+        final double maxNonLinearity = Double.parseDouble(System.getProperty("adoc2dita.scalability.maxNonLinearity", "1.5"));
+
+        run(sizes.get(0), "warmup"); // jruby and jit warmup, not reported
+
+        final Collection<Run> runs = new ArrayList<>();
+        for (final int size : sizes) {
+            runs.add(run(size, "size-" + size));
+        }
+        final Map<Integer, Run> previous = readPreviousRuns();
+        report(runs, previous);
+        appendTrend(runs);
+
+        final Collection<String> failures = new ArrayList<>();
+        Run smaller = null;
+        for (final Run run : runs) {
+            if (run.throughput < minThroughput) {
+                failures.add(String.format(ROOT, "%d files: throughput %.2f files/s < %.2f", run.size, run.throughput,
+                        minThroughput));
+            }
+            if (run.peakHeapMb > maxPeakHeapMb) {
+                failures.add(String.format(ROOT, "%d files: peak heap %dMB > %dMB", run.size, run.peakHeapMb, maxPeakHeapMb));
+            }
+            if (smaller != null) {
+                final double nonLinearity = run.msPerFile() / smaller.msPerFile();
+                if (nonLinearity > maxNonLinearity) {
+                    failures.add(String.format(ROOT, "%d -> %d files: time per file grew by %.2f > %.2f (not linear)",
+                            smaller.size, run.size, nonLinearity, maxNonLinearity));
+                }
+            }
+            smaller = run;
+        }
+        if (!failures.isEmpty()) {
+            fail(String.join("\n", failures));
+        }
+    }
+
+    private Run run(final int size, final String name) throws Exception {
+        final File root = new File(work, name);
+        delete(root);
+        final File sources = new File(root, "adoc");
+        final File images = new File(root, "images");
+        new SyntheticCorpus(size).generate(sources, images, size);
+
+        final Adoc2DitaMojo mojo = new Adoc2DitaMojo();
+        set(mojo, "sources", singletonList(sources));
+        set(mojo, "target", new File(root, "dita"));
+        set(mojo, "images", images);
+        set(mojo, "preambleAsParagraph", "false");
+        set(mojo, "format", true);
+        set(mojo, "formats", singletonList("zip"));
+        set(mojo, "attach", false);
+        set(mojo, "skipIfUpToDate", false);
+        set(mojo, "parallelSections", Boolean.getBoolean("adoc2dita.scalability.parallelSections"));
+        set(mojo, "metrics", "none");
+        set(mojo, "statistics", true);
+        set(mojo, "buildDirectory", root);
+        set(mojo, "artifactId", "scalability");
+        final StatisticsLog log = new StatisticsLog();
+        mojo.setLog(log);
+
+        System.gc(); // previous runs garbage is not part of this one
+        mojo.execute();
+
+        assertTrue(name + " produced no map", new File(root, "dita/dm-doc-0.ditamap").isFile());
+        assertTrue(name + " produced no bundle", new File(root, "scalability-dita-bundle.zip").isFile());
+        if (log.statistics == null) {
+            fail("No statistics logged for " + name);
+        }
+        final Run run = new Run(size, Long.parseLong(log.statistics.group(2)), Double.parseDouble(log.statistics.group(3)),
+                Long.parseLong(log.statistics.group(4)));
+        if (!Boolean.getBoolean("adoc2dita.scalability.keep")) {
+            delete(root);
+        }
+        return run;
+    }
+
+    // trend.csv lines are "timestamp,size,durationMs,throughput,peakHeapMb,javaVersion"
+    private Map<Integer, Run> readPreviousRuns() throws IOException {
+        final Map<Integer, Run> runs = new HashMap<>();
+        if (trend.isFile()) {
+            Files.readAllLines(trend.toPath(), UTF_8).stream().filter(l -> !l.startsWith("timestamp")).map(l -> l.split(","))
+                    .forEach(segments -> runs.put(Integer.parseInt(segments[1]), new Run(Integer.parseInt(segments[1]),
+                            Long.parseLong(segments[2]), Double.parseDouble(segments[3]), Long.parseLong(segments[4]))));
+        }
+        return runs;
+    }
+
+    private void appendTrend(final Collection<Run> runs) throws IOException {
+        trend.getParentFile().mkdirs();
+        final Collection<String> lines = new ArrayList<>();
+        if (!trend.exists()) {
+            lines.add("timestamp,size,durationMs,throughput,peakHeapMb,javaVersion");
+        }
+        final String timestamp = Instant.now().toString();
+        runs.forEach(run -> lines.add(String.format(ROOT, "%s,%d,%d,%.2f,%d,%s", timestamp, run.size, run.durationMs,
+                run.throughput, run.peakHeapMb, System.getProperty("java.version"))));
+        Files.write(trend.toPath(), lines, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // compared to the last run of the same size found in the trend file
+    private void report(final Collection<Run> runs, final Map<Integer, Run> previous) throws IOException {
+        final StringBuilder report = new StringBuilder(
+                "| files | duration (ms) | files/s | peak heap (MB) | files/s vs previous | heap vs previous |\n"
+                        + "|---|---|---|---|---|---|\n");
+        runs.forEach(run -> {
+            final Run last = previous.get(run.size);
+            report.append(String.format(ROOT, "| %d | %d | %.2f | %d | %s | %s |\n", run.size, run.durationMs, run.throughput,
+                    run.peakHeapMb, last == null ? "-" : delta(run.throughput, last.throughput),
+                    last == null ? "-" : delta(run.peakHeapMb, last.peakHeapMb)));
+        });
+        work.mkdirs();
+        Files.write(new File(work, "report.md").toPath(), report.toString().getBytes(UTF_8));
+        System.out.println(report);
+    }
+
+    private String delta(final double current, final double previous) {
+        return previous == 0 ? "-" : String.format(ROOT, "%+.1f%%", (current - previous) * 100. / previous);
+    }
+
+    private void set(final Adoc2DitaMojo mojo, final String name, final Object value) throws ReflectiveOperationException {
+        final Field field = Adoc2DitaMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    private void delete(final File root) throws IOException {
+        if (!root.exists()) {
+            return;
+        }
+        try (final Stream<Path> paths = Files.walk(root.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static class Run {
+
+        private final int size;
+
+        private final long durationMs;
+
+        private final double throughput;
+
+        private final long peakHeapMb;
+
+        private Run(final int size, final long durationMs, final double throughput, final long peakHeapMb) {
+            this.size = size;
+            this.durationMs = durationMs;
+            this.throughput = throughput;
+            this.peakHeapMb = peakHeapMb;
+        }
+
+        private double msPerFile() {
+            return durationMs * 1. / size;
+        }
+    }
+
+    // the conversion logs every written file, only the statistics are kept
+    private static class StatisticsLog extends SystemStreamLog {
+
+        private Matcher statistics;
+
+        @Override
+        public void info(final CharSequence content) {
+            final Matcher matcher = STATISTICS.matcher(content);
+            if (matcher.find()) {
+                statistics = matcher;
+                super.info(content);
+            }
+        }
+    }
+}
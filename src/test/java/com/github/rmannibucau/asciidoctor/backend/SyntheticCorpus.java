@@ -0,0 +1,92 @@
+package com.github.rmannibucau.asciidoctor.backend;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+
+// deterministic documents (seeded) mixing section depths, tables, images and xrefs
+class SyntheticCorpus {
+
+    // 1x1 transparent png
+    private static final byte[] IMAGE = Base64.getDecoder()
+            .decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNkYAAAAAYAAjCB0C8AAAAASUVORK5CYII=");
+
+    private static final int IMAGES = 20;
+
+    private final long seed;
+
+    SyntheticCorpus(final long seed) {
+        this.seed = seed;
+    }
+
+    void generate(final File sources, final File images, final int files) throws IOException {
+        sources.mkdirs();
+        images.mkdirs();
+        for (int i = 0; i < IMAGES; i++) {
+            Files.write(new File(images, "image-" + i + ".png").toPath(), IMAGE);
+        }
+        final Random random = new Random(seed);
+        for (int i = 0; i < files; i++) {
+            try (final Writer writer = Files.newBufferedWriter(new File(sources, "doc-" + i + ".adoc").toPath(), UTF_8)) {
+                writeDocument(writer, "d" + i, random);
+            }
+        }
+    }
+
+    // ids are prefixed by the document one since topics are named after them in a flat output
+    private void writeDocument(final Writer writer, final String doc, final Random random) throws IOException {
+        writer.write("= Document " + doc + "\n\nIntroduction of " + doc + ".\n\n");
+        final int chapters = 2 + random.nextInt(4);
+        final int maxDepth = 1 + random.nextInt(4);
+        int sectionIndex = 0;
+        for (int chapter = 0; chapter < chapters; chapter++) {
+            sectionIndex = writeSection(writer, doc, random, 1, maxDepth, sectionIndex);
+        }
+    }
+
+    private int writeSection(final Writer writer, final String doc, final Random random, final int level,
+            final int maxDepth, final int index) throws IOException {
+        final String id = doc + "-s" + index;
+        writer.write("[[" + id + "]]\n" + repeat('=', level + 1) + " Section " + index + " of " + doc + "\n\n");
+        final int paragraphs = 1 + random.nextInt(3);
+        for (int p = 0; p < paragraphs; p++) {
+            writer.write("Paragraph " + p + " of *" + id + "* with some _emphasis_ and `code`.\n\n");
+        }
+        if (index > 0 && random.nextInt(3) == 0) {
+            writer.write("See <<" + doc + "-s" + random.nextInt(index) + ",a previous section>>.\n\n");
+        }
+        if (random.nextInt(4) == 0) {
+            writer.write("[options=\"header\"]\n|===\n|Name |Value\n");
+            final int rows = 1 + random.nextInt(5);
+            for (int r = 0; r < rows; r++) {
+                writer.write("|row" + r + " |" + random.nextInt(1000) + "\n");
+            }
+            writer.write("|===\n\n");
+        }
+        if (random.nextInt(5) == 0) {
+            writer.write("image::image-" + random.nextInt(IMAGES) + ".png[Image of " + id + "]\n\n");
+        }
+
+        int next = index + 1;
+        if (level < maxDepth) {
+            final int children = random.nextInt(4);
+            for (int child = 0; child < children; child++) {
+                next = writeSection(writer, doc, random, level + 1, maxDepth, next);
+            }
+        }
+        return next;
+    }
+
+    private String repeat(final char c, final int times) {
+        final StringBuilder builder = new StringBuilder(times);
+        for (int i = 0; i < times; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.rmannibucau.asciidoctor.backend.dita;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+// validation is a filter on the formatting parsing so it must only add a few percents, mvn verify -Pscalability
+public class DitaValidatorOverheadIT {
+
+    private final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+
+    private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+    @Test
+    public void formatOverhead() throws Exception {
+        final double maxOverhead = Double.parseDouble(System.getProperty("adoc2dita.validation.maxOverhead", "1.05"));
+        final int runs = Integer.getInteger("adoc2dita.validation.runs", 31);
+        final Collection<String> documents = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final StringBuilder content = new StringBuilder();
+            for (int j = 0; j < 20; j++) {
+                content.append("<p>paragraph <b>").append(j).append("</b> of <i>").append(i).append("</i></p>\n")
+                        .append("<ul>\n<li>item</li>\n<li>other item</li>\n</ul>\n");
+            }
+            documents.add(concept(content.toString()));
+        }
+
+        final double[] ratios = new double[runs];
+        for (int run = 0; run < runs; run++) { // runs are paired and alternated, the median ratio ignores the noisy ones
+            if (run % 2 == 0) {
+                final long formatOnly = time(documents, false);
+                ratios[run] = time(documents, true) * 1. / formatOnly;
+            } else {
+                final long withValidation = time(documents, true);
+                ratios[run] = withValidation * 1. / time(documents, false);
+            }
+        }
+        Arrays.sort(ratios);
+        final double overhead = ratios[runs / 2];
+        assertTrue(String.format(Locale.ROOT, "validation overhead is %.3f, max is %.3f", overhead, maxOverhead),
+                overhead <= maxOverhead);
+    }
+
+    private long time(final Collection<String> documents, final boolean validate) throws Exception {
+        final long start = System.nanoTime();
+        for (final String document : documents) {
+            if (validate) {
+                final DitaValidator validator = new DitaValidator("c-overhead.dita");
+                format(document, validator);
+                assertTrue(validator.getErrors().toString(), validator.isValid());
+            } else {
+                format(document, null);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    // same chain than the mojo formatting
+    private void format(final String content, final DitaValidator validator) throws Exception {
+        final Transformer transformer = transformerFactory.newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        final XMLReader xmlReader = parserFactory.newSAXParser().getXMLReader();
+        xmlReader.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader(" ")));
+        if (validator != null) {
+            validator.setParent(xmlReader);
+        }
+        transformer.transform(new SAXSource(validator != null ? validator : xmlReader,
+                new InputSource(new StringReader(content))), new StreamResult(new StringWriter()));
+    }
+
+    private String concept(final String body) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE concept PUBLIC \"-//OASIS//DTD DITA Concept//EN\" \"concept.dtd\">\n"
+                + "<concept id=\"c-test\" xml:lang=\"en\"><title>Test</title>\n<conbody>\n" + body + "</conbody></concept>";
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.rmannibucau.asciidoctor.backend.dita;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+public class DitaValidatorTest {
+
+    private final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+
+    private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+    @Test
+    public void valid() throws Exception {
+        final DitaValidator validator = validate("c-valid.dita", concept("<p>a <b>valid</b> paragraph</p>"));
+        assertTrue(validator.getErrors().toString(), validator.isValid());
+    }
+
+    @Test
+    public void unescapedLowerThan() throws Exception {
+        final DitaValidator validator = validate("c-lt.dita", concept("<p>1 < 2</p>"));
+        assertFalse(validator.isValid());
+        assertEquals(1, validator.getErrors().size());
+        final String error = validator.getErrors().iterator().next();
+        assertTrue(error, error.startsWith("c-lt.dita:5:"));
+        assertTrue(error, error.contains("not well formed"));
+    }
+
+    @Test
+    public void paragraphInParagraph() throws Exception {
+        final DitaValidator validator = validate("c-nested.dita", concept("<p>outer<p>inner</p></p>"));
+        assertFalse(validator.isValid());
+        assertEquals(1, validator.getErrors().size());
+        final String error = validator.getErrors().iterator().next();
+        assertTrue(error, error.startsWith("c-nested.dita:5:"));
+        assertTrue(error, error.endsWith("<p> is not allowed in <p>"));
+    }
+
+    @Test
+    public void errorsArePerFile() throws Exception {
+        final DitaValidator valid = validate("c-first.dita", concept("<p>first</p>"));
+        final DitaValidator invalid = validate("c-second.dita", concept("<p><p>second</p></p>"));
+        assertTrue(valid.isValid());
+        assertFalse(invalid.isValid());
+        assertTrue(invalid.getErrors().stream().allMatch(e -> e.startsWith("c-second.dita:")));
+    }
+
+    @Test
+    public void mapRoot() throws Exception {
+        final DitaValidator validator = validate("dm-doc.ditamap", concept("<p>not a map</p>"));
+        assertFalse(validator.isValid());
+        assertTrue(validator.getErrors().iterator().next().endsWith("root element is <concept> instead of <map>"));
+    }
+
+    @Test
+    public void formatFilter() throws Exception {
+        final DitaValidator validator = new DitaValidator("c-format.dita");
+        format(concept("<p>outer<p>inner</p></p>"), validator);
+        assertFalse(validator.isValid());
+        assertTrue(validator.getErrors().iterator().next().endsWith("<p> is not allowed in <p>"));
+    }
+
+    private DitaValidator validate(final String file, final String content) throws Exception {
+        final DitaValidator validator = new DitaValidator(file);
+        validator.validate(newXmlReader(), content);
+        return validator;
+    }
+
+    // same chain than the mojo formatting
+    private String format(final String content, final DitaValidator validator) throws Exception {
+        final Transformer transformer = transformerFactory.newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        final StreamResult result = new StreamResult(new StringWriter());
+        final XMLReader xmlReader = newXmlReader();
+        if (validator != null) {
+            validator.setParent(xmlReader);
+        }
+        try {
+            transformer.transform(new SAXSource(validator != null ? validator : xmlReader,
+                    new InputSource(new StringReader(content))), result);
+        } catch (final TransformerException te) {
+            // reported by the validator
+        }
+        return result.getWriter().toString();
+    }
+
+    private XMLReader newXmlReader() throws Exception {
+        final XMLReader xmlReader = parserFactory.newSAXParser().getXMLReader();
+        xmlReader.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader(" ")));
+        return xmlReader;
+    }
+
+    private String concept(final String body) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE concept PUBLIC \"-//OASIS//DTD DITA Concept//EN\" \"concept.dtd\">\n"
+                + "<concept id=\"c-test\" xml:lang=\"en\"><title>Test</title>\n<conbody>\n" + body + "</conbody></concept>";
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.rmannibucau.asciidoctor.backend.dita;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.rmannibucau.asciidoctor.backend.dita.DitaVisitor.MapSplit;
+import com.github.rmannibucau.asciidoctor.backend.dita.DitaVisitor.Submap;
+import com.github.rmannibucau.asciidoctor.backend.dita.DitaVisitor.VisitedSection;
+
+// 100 chapters of 10 sections of 100 subsections = 101 100 topicrefs
+public class DitaVisitorMapTest {
+
+    private static final int CHAPTERS = 100;
+
+    private static final int SECTIONS = 10;
+
+    private static final int SUBSECTIONS = 100;
+
+    private static final int NODES = CHAPTERS + CHAPTERS * SECTIONS + CHAPTERS * SECTIONS * SUBSECTIONS;
+
+    @Test
+    public void streamHugeMap() throws IOException {
+        final long maxDuration = Long.getLong("adoc2dita.map.maxDurationMs", 10000);
+        final Collection<VisitedSection> chapters = tree();
+
+        final CountingWriter writer = new CountingWriter();
+        final long start = System.nanoTime();
+        DitaVisitor.writeMap(writer, "dm-huge", "Huge", chapters, 1, true, null);
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(NODES, writer.topicrefs);
+        assertEquals(CHAPTERS + CHAPTERS * SECTIONS, writer.closedTopicrefs);
+        assertEquals(0, writer.maprefs);
+        assertTrue("the map is buffered, biggest write: " + writer.biggestWrite, writer.biggestWrite < 256);
+        assertTrue("map written in " + duration + "ms, max is " + maxDuration + "ms", duration <= maxDuration);
+    }
+
+    @Test
+    public void splitBySize() throws IOException {
+        final Collection<VisitedSection> chapters = tree();
+        final MapSplit split = new MapSplit("huge", 0, 500, chapters); // only chapters have 500+ descendants
+
+        final Collection<Submap> submaps = split.findSubmaps(chapters);
+        assertEquals(CHAPTERS, submaps.size());
+        assertTrue(submaps.stream().allMatch(s -> s.name.startsWith("sm-huge-chapter")));
+
+        final CountingWriter main = new CountingWriter();
+        DitaVisitor.writeMap(main, "dm-huge", "Huge", chapters, 1, true, split);
+        assertEquals(CHAPTERS, main.maprefs);
+        assertEquals(0, main.topicrefs);
+        assertEquals(NODES, countSubmapTopicrefs(submaps, split));
+    }
+
+    @Test
+    public void splitByDepth() throws IOException {
+        final Collection<VisitedSection> chapters = tree();
+        final MapSplit split = new MapSplit("huge", 2, 0, chapters);
+
+        final Collection<Submap> submaps = split.findSubmaps(chapters);
+        assertEquals(CHAPTERS * SECTIONS, submaps.size());
+
+        final CountingWriter main = new CountingWriter();
+        DitaVisitor.writeMap(main, "dm-huge", "Huge", chapters, 1, true, split);
+        assertEquals(CHAPTERS * SECTIONS, main.maprefs);
+        assertEquals(CHAPTERS, main.topicrefs);
+        assertEquals(NODES - CHAPTERS, countSubmapTopicrefs(submaps, split));
+    }
+
+    private long countSubmapTopicrefs(final Collection<Submap> submaps, final MapSplit split) throws IOException {
+        long topicrefs = 0;
+        for (final Submap submap : submaps) {
+            final CountingWriter writer = new CountingWriter();
+            DitaVisitor.writeMap(writer, submap.name, null, singletonList(submap.section),
+                    submap.depth, false, split);
+            assertEquals(0, writer.maprefs);
+            topicrefs += writer.topicrefs;
+        }
+        return topicrefs;
+    }
+
+    private Collection<VisitedSection> tree() {
+        final Collection<VisitedSection> chapters = new ArrayList<>(CHAPTERS);
+        for (int c = 0; c < CHAPTERS; c++) {
+            final VisitedSection chapter = new VisitedSection("c-chapter" + c, "Chapter " + c, null);
+            chapters.add(chapter);
+            for (int s = 0; s < SECTIONS; s++) {
+                final VisitedSection section = new VisitedSection("c-chapter" + c + "_section" + s, "Section " + s,
+                        chapter);
+                chapter.children.add(section);
+                for (int ss = 0; ss < SUBSECTIONS; ss++) {
+                    section.children.add(new VisitedSection("c-chapter" + c + "_section" + s + "_" + ss,
+                            "Subsection " + ss, section));
+                }
+            }
+        }
+        return chapters;
+    }
+
+    // nothing is kept, only counted, so a map buffered before being written shows up as a big write
+    private static class CountingWriter extends Writer {
+
+        private int biggestWrite;
+
+        private long topicrefs;
+
+        private long closedTopicrefs;
+
+        private long maprefs;
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            final String chunk = new String(buffer, offset, length);
+            biggestWrite = Math.max(biggestWrite, length);
+            topicrefs += count(chunk, "<topicref ");
+            closedTopicrefs += count(chunk, "</topicref>");
+            maprefs += count(chunk, "<mapref ");
+        }
+
+        @Override
+        public void flush() {
+            // no-op
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+
+        private static int count(final String chunk, final String token) {
+            int count = 0;
+            int from = chunk.indexOf(token);
+            while (from >= 0) {
+                count++;
+                from = chunk.indexOf(token, from + token.length());
+            }
+            return count;
+        }
+    }
+}